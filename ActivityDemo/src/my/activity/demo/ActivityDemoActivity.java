@@ -1,5 +1,6 @@
 package my.activity.demo;
 
+import java.util.List;
 import java.util.Random;
 
 import my.activity.demo.listmanager.ListManager;
@@ -12,8 +13,6 @@ import my.activity.demo.period.PeriodActivity;
 import my.activity.demo.settings.SettingsActivity;
 import my.activity.demo.sleep.SleepService;
 import android.app.Activity;
-import android.app.AlarmManager;
-import android.app.PendingIntent;
 import android.content.Intent;
 import android.os.Bundle;
 import android.telephony.NeighboringCellInfo;
@@ -23,8 +22,6 @@ import android.view.View;
 import android.widget.Toast;
 
 public class ActivityDemoActivity extends Activity {
-    private PendingIntent operation;
-
     /** Called when the activity is first created. */
     @Override
     public void onCreate(Bundle savedInstanceState) {
@@ -32,6 +29,14 @@ public class ActivityDemoActivity extends Activity {
         setContentView(R.layout.main);
     }
 
+    @Override
+    protected void onStop() {
+        super.onStop();
+
+        // process may be killed, when activity is not visible
+        Helper.flushLog();
+    }
+
     @SuppressWarnings("unused")
     public void finishClick(View v) {
         finish();
@@ -66,11 +71,12 @@ public class ActivityDemoActivity extends Activity {
     public void cellClick(View v) {
         SharedList<NeighboringCellInfo> list = ListManager.getOrCreateList("cell_list", new InMemoryList<NeighboringCellInfo>());
         TelephonyManager manager = (TelephonyManager) getSystemService(TELEPHONY_SERVICE);
-        for (NeighboringCellInfo info : manager.getNeighboringCellInfo()) {
+        List<NeighboringCellInfo> cells = manager.getNeighboringCellInfo();
+        for (NeighboringCellInfo info : cells) {
             String string = "Cell ID: " + info.getCid() + ", LAC: " + info.getLac() + ", RSSI: " + info.getRssi();
             Helper.log("scan", string);
-            list.add(info);
         }
+        list.addAll(cells);
         Helper.log("scan", "------------------scanned--------------------");
 
         startActivity(new Intent(this, CellDetectionActivity.class));
@@ -78,19 +84,14 @@ public class ActivityDemoActivity extends Activity {
 
     @SuppressWarnings("unused")
     public void startScanClick(View v) {
-        Intent intent = new Intent(getApplicationContext(), CellScanService.class);
-        operation = PendingIntent.getService(this, 0, intent, 0);
-
-        AlarmManager alarmManager = (AlarmManager) getSystemService(ALARM_SERVICE);
-        alarmManager.setRepeating(AlarmManager.ELAPSED_REALTIME_WAKEUP, 0, 10 * 1000, operation);
+        CellScanService.startScanning(this);
 
         Toast.makeText(this, "Alarm started.", Toast.LENGTH_LONG).show();
     }
 
     @SuppressWarnings("unused")
     public void stopScanClick(View v) {
-        AlarmManager alarmManager = (AlarmManager) getSystemService(ALARM_SERVICE);
-        alarmManager.cancel(operation);
+        CellScanService.stopScanning(this);
 
         Toast.makeText(this, "Alarm stopped.", Toast.LENGTH_LONG).show();
     }
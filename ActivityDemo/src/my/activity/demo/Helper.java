@@ -1,13 +1,14 @@
 package my.activity.demo;
 
 import java.io.File;
-import java.io.PrintWriter;
-import java.io.StringWriter;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.TimeZone;
-
+import java.io.IOException;
+import java.io.Writer;
+
+import my.activity.demo.util.LogQueue;
+import my.activity.demo.util.LogWriter;
+import my.activity.demo.util.RollingLogWriter;
+import my.activity.demo.util.Statistics;
+import my.activity.demo.util.TimestampCodec;
 import android.app.Notification;
 import android.app.NotificationManager;
 import android.app.PendingIntent;
@@ -16,55 +17,38 @@ import android.content.Intent;
 import android.os.Environment;
 import android.util.Log;
 
-import com.google.code.microlog4android.Level;
-import com.google.code.microlog4android.Logger;
-import com.google.code.microlog4android.appender.FileAppender;
-import com.google.code.microlog4android.format.Formatter;
-import com.google.code.microlog4android.repository.DefaultLoggerRepository;
-
 public class Helper {
     public static final String[] STATUSES = {"Out of Service", "Temporarily Unavailable", "Available"};
 
-    private static final DateFormat DATE_LONG = new SimpleDateFormat("dd-MM-yyyy HH:mm:ss.SSS");
-    private static final DateFormat DATE_ELAPSED = new SimpleDateFormat("HH:mm:ss");
-    private static final Logger LOGGER;
-    static {
-        DATE_ELAPSED.setTimeZone(TimeZone.getTimeZone("UTC"));
-
-        LOGGER = DefaultLoggerRepository.INSTANCE.getRootLogger();
-        FileAppender fileAppender = new FileAppender();
-        fileAppender.setFileName(".logs/LOG [" + new SimpleDateFormat("dd-MM-yyyy").format(new Date()) + "].txt");
-        fileAppender.setAppend(true);
-        fileAppender.setFormatter(new Formatter() {
+    // records are written to log file by background writer in batches, at least once per flush interval
+    private static final int LOG_QUEUE_SIZE = 1024;
+    private static final int LOG_BATCH_SIZE = 16 * 1024;
+    private static final long LOG_FLUSH_INTERVAL = 2 * 1000;
 
-            @Override
-            public void setProperty(String s, String s1) {
-                // empty
-            }
+    // log segments are compressed when closed, the oldest ones are deleted to keep logs in total size
+    private static final long LOG_SEGMENT_SIZE = 1024 * 1024;
+    private static final long LOG_TOTAL_SIZE = 32 * 1024 * 1024;
 
-            @Override
-            public String[] getPropertyNames() {
-                return new String[0];
-            }
+    private static final TimestampCodec TIMESTAMPS = new TimestampCodec();
+    private static final LogWriter LOG_WRITER;
+    static {
+        File directory = new File(Environment.getExternalStorageDirectory(), ".logs");
+        Writer output = null;
+        try {
+            output = new RollingLogWriter(directory, "LOG", LOG_SEGMENT_SIZE, LOG_TOTAL_SIZE);
+        } catch (IOException e) {
+            Log.e("log", "Failed to open log directory '" + directory + "'.", e);
+        }
 
+        // system log gets records on writer thread too
+        LogQueue.Consumer systemLog = new LogQueue.Consumer() {
             @Override
-            public String format(String clientID, String name, long time, Level level, Object message, Throwable t) {
-                StringBuilder stringBuilder = new StringBuilder();
-                stringBuilder.append(Helper.formatNow());
-                stringBuilder.append(" ");
-                stringBuilder.append(message);
-                if (t != null) {
-                    stringBuilder.append(System.getProperty("line.separator"));
-                    stringBuilder.append(t.toString());
-
-                    StringWriter writer = new StringWriter();
-                    t.printStackTrace(new PrintWriter(writer, true));
-                    stringBuilder.append(writer.getBuffer());
-                }
-                return stringBuilder.toString();
+            public void record(long time, String tag, String message, Throwable cause) {
+                Log.i(tag, message, cause);
             }
-        });
-        LOGGER.addAppender(fileAppender);
+        };
+        LOG_WRITER = new LogWriter(new LogQueue(LOG_QUEUE_SIZE), output, systemLog, LOG_BATCH_SIZE, LOG_FLUSH_INTERVAL);
+        LOG_WRITER.start();
     }
 
     public static Notification createNotification(Context context, CharSequence tickerText, String text) {
@@ -102,15 +86,15 @@ public class Helper {
     }
 
     public static String formatNow() {
-        return DATE_LONG.format(new Date());
+        return TIMESTAMPS.formatLong(System.currentTimeMillis());
     }
 
     public static String format(long milliseconds) {
-        return DATE_LONG.format(new Date(milliseconds));
+        return TIMESTAMPS.formatLong(milliseconds);
     }
 
     public static String formatElapsed(long milliseconds) {
-        return DATE_ELAPSED.format(new Date(milliseconds));
+        return TIMESTAMPS.formatElapsed(milliseconds);
     }
 
     public static void backupLogs() {
@@ -128,30 +112,26 @@ public class Helper {
         log(tag, message, null);
     }
 
+    /**
+     * Queues record for system log and log file, caller is never blocked: record is dropped if queue is full.
+     */
     public static void log(String tag, String message, Throwable causeException) {
-        Log.i(tag, message, causeException);
+        LOG_WRITER.log(tag, message, causeException);
+    }
 
-        LOGGER.info("[" + tag + "]: " + message, causeException);
+    /**
+     * Writes queued records to log file in background. Shutdown hooks are not run when Android kills process, so it
+     * is called when services and activities are stopped, process may be killed after that.
+     */
+    public static void flushLog() {
+        LOG_WRITER.flush();
     }
 
     public static double average(double[] data) {
-        double avg = 0;
-        for (double element : data) {
-            avg += element / data.length;
-        }
-        return avg;
+        return Statistics.average(data);
     }
 
     public static double deviation(double[] data) {
-        if (data.length < 2) {
-             return 0;
-        }
-        double avg = average(data);
-        double sum = 0;
-        for (double element : data) {
-            sum += (element - avg) * (element - avg);
-        }
-
-        return Math.sqrt(sum / (data.length - 1));
+        return Statistics.deviation(data);
     }
 }
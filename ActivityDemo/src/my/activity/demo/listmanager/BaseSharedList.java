@@ -1,6 +1,7 @@
 package my.activity.demo.listmanager;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
@@ -10,6 +11,10 @@ public abstract class BaseSharedList<T> implements SharedList<T> {
         Collections.synchronizedList(new ArrayList<SharedListUpdateListener>());
     private final Object listenerLock = new Object();
 
+    // depth of nested batches and whether list is changed in the current batch, guarded by listenerLock
+    private int batchDepth;
+    private boolean batchChanged;
+
     @Override
     public Iterator<T> iterator() {
         return new Iterator<T>() {
@@ -34,32 +39,96 @@ public abstract class BaseSharedList<T> implements SharedList<T> {
 
     @Override
     public void clear() {
-        boolean changed = false;
-        while (size() > 0) {
-            doRemove(0);
+        removeRange(0, size());
+    }
+
+    @Override
+    public boolean add(T item) {
+        boolean result = false;
+        boolean persisted;
+        beginBatch();
+        try {
+            result = changed(doAdd(item));
+        } finally {
+            persisted = endBatch();
+        }
+        return result && persisted;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends T> items) {
+        if (items.isEmpty()) {
+            return false;
         }
 
-        synchronized (listenerLock) {
-            invokeListener(changed);
+        boolean result = false;
+        boolean persisted;
+        beginBatch();
+        try {
+            result = changed(doAddAll(items));
+        } finally {
+            persisted = endBatch();
         }
+        return result && persisted;
     }
 
     @Override
-    public boolean add(T item) {
-        boolean result = doAdd(item);
+    public boolean remove(int index) {
+        boolean result = false;
+        boolean persisted;
+        beginBatch();
+        try {
+            result = changed(doRemove(index));
+        } finally {
+            persisted = endBatch();
+        }
+        return result && persisted;
+    }
+
+    @Override
+    public boolean removeRange(int from, int to) {
+        if (from >= to) {
+            return false;
+        }
+
+        boolean result = false;
+        boolean persisted;
+        beginBatch();
+        try {
+            result = changed(doRemoveRange(from, to));
+        } finally {
+            persisted = endBatch();
+        }
+        return result && persisted;
+    }
+
+    @Override
+    public void beginBatch() {
         synchronized (listenerLock) {
-            invokeListener(result);
+            if (batchDepth++ == 0) {
+                batchChanged = false;
+                doBeginBatch();
+            }
         }
-        return result;
     }
 
     @Override
-    public boolean remove(int index) {
-        boolean result = doRemove(index);
+    public boolean endBatch() {
         synchronized (listenerLock) {
-            invokeListener(result);
+            if (batchDepth == 0) {
+                throw new IllegalStateException("Batch is not started.");
+            }
+            if (--batchDepth > 0) {
+                return true;
+            }
+
+            // listeners see only persisted changes
+            if (!doEndBatch()) {
+                return false;
+            }
+            invokeListener(batchChanged);
+            return true;
         }
-        return result;
     }
 
     @Override
@@ -78,6 +147,13 @@ public abstract class BaseSharedList<T> implements SharedList<T> {
         }
     }
 
+    private boolean changed(boolean result) {
+        synchronized (listenerLock) {
+            batchChanged |= result;
+        }
+        return result;
+    }
+
     private void invokeListener(boolean condition) {
         if (condition) {
             for (SharedListUpdateListener listener : listeners) {
@@ -89,4 +165,36 @@ public abstract class BaseSharedList<T> implements SharedList<T> {
     protected abstract boolean doAdd(T item);
 
     protected abstract boolean doRemove(int index);
+
+    protected boolean doAddAll(Collection<? extends T> items) {
+        boolean result = false;
+        for (T item : items) {
+            result |= doAdd(item);
+        }
+        return result;
+    }
+
+    protected boolean doRemoveRange(int from, int to) {
+        boolean result = false;
+        for (int i = from; i < to; i++) {
+            result |= doRemove(from);
+        }
+        return result;
+    }
+
+    /**
+     * Called when the outermost batch is started, changes till {@link #doEndBatch()} may be collected and persisted
+     * together.
+     */
+    protected void doBeginBatch() {
+    }
+
+    /**
+     * Called when the outermost batch ends.
+     *
+     * @return false if changes of batch failed to persist, list must be left as it was before batch then
+     */
+    protected boolean doEndBatch() {
+        return true;
+    }
 }
@@ -1,5 +1,7 @@
 package my.activity.demo.listmanager;
 
+import java.util.Collection;
+
 public interface SharedList<T> extends Iterable<T> {
     void clear();
 
@@ -9,8 +11,27 @@ public interface SharedList<T> extends Iterable<T> {
 
     boolean add(T item);
 
+    boolean addAll(Collection<? extends T> items);
+
     boolean remove(int index);
 
+    /**
+     * Removes items from index 'from' inclusive to index 'to' exclusive.
+     */
+    boolean removeRange(int from, int to);
+
+    /**
+     * Starts batch of changes: changes till matching {@link #endBatch()} are persisted together and listeners are
+     * notified once. Batches may be nested, the outermost one is applied.
+     */
+    void beginBatch();
+
+    /**
+     * @return false if changes of the outermost batch failed to persist, then they are dropped and listeners are not
+     *         notified
+     */
+    boolean endBatch();
+
     void registerUpdateListener(SharedListUpdateListener listener);
 
     void unregisterUpdateListener(SharedListUpdateListener listener);
@@ -1,6 +1,7 @@
 package my.activity.demo.listmanager.inmemory;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import my.activity.demo.listmanager.BaseSharedList;
@@ -27,4 +28,15 @@ public class InMemoryList<T> extends BaseSharedList<T> {
     protected boolean doRemove(int index) {
         return internalList.remove(index) != null;
     }
+
+    @Override
+    protected boolean doAddAll(Collection<? extends T> items) {
+        return internalList.addAll(items);
+    }
+
+    @Override
+    protected boolean doRemoveRange(int from, int to) {
+        internalList.subList(from, to).clear();
+        return true;
+    }
 }
@@ -5,14 +5,38 @@ import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import my.activity.demo.listmanager.BaseSharedList;
 
+/**
+ * List persisted as key value pairs: size and item by index. Changes of batch are collected in memory, where they are
+ * seen by reads, and are persisted with one write when batch ends. Recently got items are kept decoded by index, so
+ * they must not be changed by callers.
+ */
 public abstract class BasePersistenceSharedList<T> extends BaseSharedList<T> {
     private static final String KEY_SIZE = "size";
     private static final String CHARSET = "utf-8";
+    private static final int CACHE_SIZE = 64;
     protected final ObjectConvertor<T> convertor;
 
+    // changes of the current batch by key, value is String, Integer or null if key is removed, guarded by this
+    private Map<String, Object> batch;
+
+    // decoded items by index from the least recently got one, guarded by this
+    private final Map<Integer, T> cache = new LinkedHashMap<Integer, T>(CACHE_SIZE * 2, 0.75f, true) {
+        private static final long serialVersionUID = 3541226508460916341L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, T> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
     public BasePersistenceSharedList(ObjectConvertor<T> convertor) {
         this.convertor = convertor;
     }
@@ -23,40 +47,148 @@ public abstract class BasePersistenceSharedList<T> extends BaseSharedList<T> {
 
     protected abstract int fromPersistenceInt(String key);
 
-    protected abstract boolean toPersistence(String key, String value);
-
-    protected abstract boolean toPersistence(String key, int value);
+    /**
+     * Persists changes with one write.
+     *
+     * @param changes values by key, value is String, Integer or null if key is removed
+     */
+    protected abstract boolean toPersistence(Map<String, Object> changes);
 
     @Override
     public int size() {
-        return fromPersistenceInt(hashString(KEY_SIZE));
+        return readInt(hashString(KEY_SIZE));
     }
 
     @Override
-    public T get(int index) {
+    public synchronized T get(int index) {
+        T item = cache.get(index);
+        if (item != null) {
+            return item;
+        }
+
         try {
-            String value = fromPersistenceString(hashInteger(index));
+            String value = readString(hashInteger(index));
             DataInputStream input = new DataInputStream(new ByteArrayInputStream(value.getBytes(CHARSET)));
             try {
-                return convertor.fromStream(input);
+                item = convertor.fromStream(input);
             } finally {
                 input.close();
             }
         } catch (IOException e) {
             throw new PersistenceSharedListException("Failed to get item at index '" + index + "'.", e);
         }
+        cache.put(index, item);
+        return item;
     }
 
     @Override
     protected boolean doAdd(T item) {
+        return doAddAll(Collections.singletonList(item));
+    }
+
+    @Override
+    protected boolean doAddAll(Collection<? extends T> items) {
+        int size = size();
+        invalidateCache(size);
+        for (T item : items) {
+            write(hashInteger(size), toPersistenceString(item));
+            size++;
+        }
+        write(hashString(KEY_SIZE), size);
+        return true;
+    }
+
+    @Override
+    protected boolean doRemove(int index) {
+        return doRemoveRange(index, index + 1);
+    }
+
+    /**
+     * Shifts items after range to its start and removes keys of the last items.
+     */
+    @Override
+    protected boolean doRemoveRange(int from, int to) {
+        int size = size();
+        if (from < 0 || to > size) {
+            throw new IndexOutOfBoundsException("Range [" + from + ", " + to + ") is out of list of size " + size + ".");
+        }
+
+        // items after range are shifted
+        invalidateCache(from);
+
+        int count = to - from;
+        for (int i = to; i < size; i++) {
+            write(hashInteger(i - count), readString(hashInteger(i)));
+        }
+        for (int i = size - count; i < size; i++) {
+            write(hashInteger(i), null);
+        }
+        write(hashString(KEY_SIZE), size - count);
+        return true;
+    }
+
+    @Override
+    protected synchronized void doBeginBatch() {
+        batch = new LinkedHashMap<String, Object>();
+    }
+
+    /**
+     * Persists changes of batch, if it fails, changes are dropped, so list is read from persistence as it was.
+     */
+    @Override
+    protected synchronized boolean doEndBatch() {
+        Map<String, Object> changes = batch;
+        batch = null;
+        if (!changes.isEmpty() && !toPersistence(changes)) {
+            // items may be decoded from changes, which are lost
+            cache.clear();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Removes decoded items from given index till the end of list.
+     */
+    private synchronized void invalidateCache(int from) {
+        Iterator<Integer> indexes = cache.keySet().iterator();
+        while (indexes.hasNext()) {
+            if (indexes.next() >= from) {
+                indexes.remove();
+            }
+        }
+    }
+
+    private synchronized String readString(String key) {
+        if (batch != null && batch.containsKey(key)) {
+            return (String) batch.get(key);
+        }
+        return fromPersistenceString(key);
+    }
+
+    private synchronized int readInt(String key) {
+        if (batch != null && batch.containsKey(key)) {
+            Integer value = (Integer) batch.get(key);
+            return value == null ? 0 : value;
+        }
+        return fromPersistenceInt(key);
+    }
+
+    private synchronized void write(String key, Object value) {
+        if (batch != null) {
+            batch.put(key, value);
+        } else if (!toPersistence(Collections.singletonMap(key, value))) {
+            throw new PersistenceSharedListException("Failed to persist value for '" + key + "'.");
+        }
+    }
+
+    private String toPersistenceString(T item) {
         try {
-            int size = size();
             ByteArrayOutputStream byteArray = new ByteArrayOutputStream();
             DataOutputStream output = new DataOutputStream(byteArray);
             try {
                 convertor.toStream(item, output);
-                return toPersistence(hashInteger(size), byteArray.toString(CHARSET)) &&
-                    toPersistence(hashString(KEY_SIZE), size + 1);
+                return byteArray.toString(CHARSET);
             } finally {
                 output.close();
             }
@@ -65,12 +197,6 @@ public abstract class BasePersistenceSharedList<T> extends BaseSharedList<T> {
         }
     }
 
-    @Override
-    protected boolean doRemove(int index) {
-        return toPersistence(hashInteger(index), null) &&
-            toPersistence(hashString(KEY_SIZE), size() - 1);
-    }
-
     private String hashInteger(int i) {
         return hashString(String.valueOf(i));
     }
@@ -0,0 +1,277 @@
+package my.activity.demo.listmanager.persistence.file;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Append only journal of string values by key. Values are kept in memory, each change is one small record appended
+ * to file and journal is replayed when it is opened, so cost of change does not depend on count of values. Records
+ * of changes put together are appended with one write. When journal holds more overwritten records than live values,
+ * it is compacted in background: live values are written to new file, which replaces the journal together with
+ * records appended meanwhile. Incomplete record at the end of file is cut off when journal is opened. Instance is
+ * thread safe and plain Java, so it is checked by logs analyzer.
+ */
+public class FileJournal {
+    public static final String EXTENSION = ".journal";
+
+    private static final int MAGIC = 0x4e524c46;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+
+    // small journals are not compacted, they are replayed fast anyway
+    private static final int MIN_DEAD_RECORDS = 256;
+
+    private static final ExecutorService COMPACTOR = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "[journal compactor]");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }
+    });
+
+    private final File file;
+    private final Map<String, String> values = new HashMap<String, String>();
+    private final ByteArrayOutputStream record = new ByteArrayOutputStream();
+    private final DataOutputStream recordOutput = new DataOutputStream(record);
+
+    // opened on the first change
+    private FileOutputStream output;
+    private int recordCount;
+    // records appended while compaction is running or null if it is not running
+    private List<byte[]> pending;
+    private int pendingCount;
+
+    /**
+     * Replays journal file, new journal is created on the first change if file does not exist.
+     */
+    public FileJournal(File file) throws IOException {
+        this.file = file;
+        if (file.exists()) {
+            replay();
+        }
+    }
+
+    public synchronized String get(String key) {
+        return values.get(key);
+    }
+
+    /**
+     * Appends record of change to journal, value is removed if it is null.
+     */
+    public void put(String key, String value) throws IOException {
+        putAll(Collections.singletonMap(key, value));
+    }
+
+    /**
+     * Appends records of changes to journal with one write, value is removed if it is null.
+     */
+    public synchronized void putAll(Map<String, String> changes) throws IOException {
+        record.reset();
+        int count = 0;
+        for (Map.Entry<String, String> change : changes.entrySet()) {
+            String value = change.getValue();
+            if (value == null ? !values.containsKey(change.getKey()) : value.equals(values.get(change.getKey()))) {
+                continue;
+            }
+            writeRecord(recordOutput, change.getKey(), value);
+            count++;
+        }
+        if (count == 0) {
+            return;
+        }
+
+        if (output == null) {
+            openOutput();
+        }
+        byte[] records = record.toByteArray();
+        output.write(records);
+        if (pending != null) {
+            pending.add(records);
+            pendingCount += count;
+        }
+
+        for (Map.Entry<String, String> change : changes.entrySet()) {
+            if (change.getValue() == null) {
+                values.remove(change.getKey());
+            } else {
+                values.put(change.getKey(), change.getValue());
+            }
+        }
+        recordCount += count;
+
+        int deadCount = recordCount - values.size();
+        if (pending == null && deadCount >= MIN_DEAD_RECORDS && deadCount > values.size()) {
+            scheduleCompaction();
+        }
+    }
+
+    private void replay() throws IOException {
+        byte[] data;
+        RandomAccessFile input = new RandomAccessFile(file, "r");
+        try {
+            data = new byte[(int) input.length()];
+            input.readFully(data);
+        } finally {
+            input.close();
+        }
+        if (data.length < HEADER_SIZE) {
+            // header was not written completely
+            truncate(0);
+            return;
+        }
+
+        ByteArrayInputStream bytes = new ByteArrayInputStream(data);
+        DataInputStream stream = new DataInputStream(bytes);
+        if (stream.readInt() != MAGIC || stream.readInt() != VERSION) {
+            throw new IOException("File '" + file + "' is not a journal.");
+        }
+        int end = HEADER_SIZE;
+        try {
+            while (bytes.available() > 0) {
+                byte type = stream.readByte();
+                String key = stream.readUTF();
+                if (type == PUT) {
+                    values.put(key, stream.readUTF());
+                } else if (type == REMOVE) {
+                    values.remove(key);
+                } else {
+                    break;
+                }
+                recordCount++;
+                end = data.length - bytes.available();
+            }
+        } catch (IOException e) {
+            // incomplete record
+        }
+        if (end < data.length) {
+            truncate(end);
+        }
+    }
+
+    private void truncate(long length) throws IOException {
+        RandomAccessFile output = new RandomAccessFile(file, "rw");
+        try {
+            output.setLength(length);
+        } finally {
+            output.close();
+        }
+    }
+
+    private void openOutput() throws IOException {
+        boolean created = file.length() == 0;
+        output = new FileOutputStream(file, true);
+        if (created) {
+            // header has its own buffer, record buffer holds the records being appended
+            ByteArrayOutputStream header = new ByteArrayOutputStream(HEADER_SIZE);
+            writeHeader(new DataOutputStream(header));
+            header.writeTo(output);
+            file.setReadable(true, false);
+        }
+    }
+
+    private void closeOutput() {
+        if (output == null) {
+            return;
+        }
+
+        try {
+            output.close();
+        } catch (IOException e) {
+            // records are written without buffering, so none of them is lost
+            e.printStackTrace();
+        }
+        output = null;
+    }
+
+    private void scheduleCompaction() {
+        final Map<String, String> snapshot = new HashMap<String, String>(values);
+        pending = new ArrayList<byte[]>();
+        pendingCount = 0;
+        COMPACTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    compact(snapshot);
+                } catch (IOException e) {
+                    // journal is compacted again on the next change
+                    e.printStackTrace();
+                }
+            }
+        });
+    }
+
+    /**
+     * Writes values to temporary file and replaces journal with it, when records appended meanwhile are copied to it.
+     */
+    private void compact(Map<String, String> snapshot) throws IOException {
+        File temporary = new File(file.getPath() + ".tmp");
+        try {
+            FileOutputStream stream = new FileOutputStream(temporary);
+            try {
+                DataOutputStream compacted = new DataOutputStream(new BufferedOutputStream(stream));
+                writeHeader(compacted);
+                for (Map.Entry<String, String> entry : snapshot.entrySet()) {
+                    writeRecord(compacted, entry.getKey(), entry.getValue());
+                }
+                compacted.flush();
+
+                synchronized (this) {
+                    for (byte[] appended : pending) {
+                        compacted.write(appended);
+                    }
+                    compacted.flush();
+                    stream.getFD().sync();
+                    temporary.setReadable(true, false);
+
+                    closeOutput();
+                    if (!temporary.renameTo(file)) {
+                        throw new IOException("Failed to replace '" + file + "'.");
+                    }
+                    recordCount = snapshot.size() + pendingCount;
+                }
+            } finally {
+                stream.close();
+            }
+        } finally {
+            synchronized (this) {
+                pending = null;
+            }
+            temporary.delete();
+        }
+    }
+
+    private static void writeHeader(DataOutputStream output) throws IOException {
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+    }
+
+    private static void writeRecord(DataOutputStream output, String key, String value) throws IOException {
+        if (value == null) {
+            output.writeByte(REMOVE);
+            output.writeUTF(key);
+        } else {
+            output.writeByte(PUT);
+            output.writeUTF(key);
+            output.writeUTF(value);
+        }
+    }
+}
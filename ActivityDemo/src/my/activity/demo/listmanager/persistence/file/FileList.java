@@ -1,35 +1,33 @@
 package my.activity.demo.listmanager.persistence.file;
 
+import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Properties;
 
 import my.activity.demo.Helper;
 import my.activity.demo.listmanager.persistence.BasePersistenceSharedList;
 import my.activity.demo.listmanager.persistence.ObjectConvertor;
+import my.activity.demo.listmanager.persistence.PersistenceSharedListException;
 import android.content.Context;
 
+/**
+ * List persisted to {@link FileJournal} "fileName.journal" in private files of application, each change appends a
+ * record instead of rewriting the whole file. Properties file "fileName" of previous versions is moved into journal.
+ */
 public class FileList<T> extends BasePersistenceSharedList<T> {
-    private final Properties properties = new Properties();
-    private final String fileName;
-    private final Context context;;
+    private final FileJournal journal;
 
     public FileList(ObjectConvertor<T> convertor, String fileName, Context context) {
         super(convertor);
-        this.fileName = fileName;
-        this.context = context;
 
         try {
-            FileInputStream input = context.openFileInput(fileName);
-            try {
-                properties.clear();
-                properties.load(input);
-            } finally {
-                input.close();
-            }
+            journal = new FileJournal(context.getFileStreamPath(fileName + FileJournal.EXTENSION));
+            importProperties(context.getFileStreamPath(fileName));
         } catch (IOException e) {
-            Helper.log("file-list", "I/O exception occurred while creating file-based shared list.", e);
+            throw new PersistenceSharedListException("Failed to open list file '" + fileName + "'.", e);
         }
     }
 
@@ -40,13 +38,18 @@ public class FileList<T> extends BasePersistenceSharedList<T> {
 
     @Override
     protected String fromPersistenceString(String key) {
-        return properties.getProperty(key);
+        return journal.get(key);
     }
 
     @Override
     protected int fromPersistenceInt(String key) {
+        String value = journal.get(key);
+        if (value == null) {
+            return 0;
+        }
+
         try {
-            return Integer.parseInt(properties.getProperty(key));
+            return Integer.parseInt(value);
         } catch (NumberFormatException e) {
             Helper.log("file-list", "I/O exception occurred while parsing value for '" + key + "'.", e);
             return 0;
@@ -54,26 +57,41 @@ public class FileList<T> extends BasePersistenceSharedList<T> {
     }
 
     @Override
-    protected boolean toPersistence(String key, String value) {
-        properties.put(key, value);
+    protected boolean toPersistence(Map<String, Object> changes) {
+        Map<String, String> values = new LinkedHashMap<String, String>();
+        for (Map.Entry<String, Object> change : changes.entrySet()) {
+            Object value = change.getValue();
+            values.put(change.getKey(), value == null ? null : value.toString());
+        }
 
         try {
-            FileOutputStream output = context.openFileOutput(fileName, Context.MODE_WORLD_READABLE);
-            try {
-                properties.store(output, "Last updated " + Helper.formatNow());
-                return true;
-            } finally {
-                output.close();
-            }
+            journal.putAll(values);
+            return true;
         } catch (IOException e) {
             Helper.log("file-list", "Failed to write data to file.", e);
             return false;
         }
     }
 
-    @Override
-    protected boolean toPersistence(String key, int value) {
-        return toPersistence(key, String.valueOf(value));
-    }
+    private void importProperties(File file) throws IOException {
+        if (!file.isFile()) {
+            return;
+        }
 
+        Properties properties = new Properties();
+        FileInputStream input = new FileInputStream(file);
+        try {
+            properties.load(input);
+        } finally {
+            input.close();
+        }
+        Map<String, String> values = new LinkedHashMap<String, String>();
+        for (String key : properties.stringPropertyNames()) {
+            values.put(key, properties.getProperty(key));
+        }
+        journal.putAll(values);
+        if (!file.delete()) {
+            Helper.log("file-list", "Failed to delete imported file '" + file + "'.");
+        }
+    }
 }
@@ -1,5 +1,7 @@
 package my.activity.demo.listmanager.persistence.sharedpreferences;
 
+import java.util.Map;
+
 import my.activity.demo.listmanager.persistence.BasePersistenceSharedList;
 import my.activity.demo.listmanager.persistence.ObjectConvertor;
 import android.content.Context;
@@ -36,19 +38,23 @@ public class SharedPreferencesList<T> extends BasePersistenceSharedList<T> {
         return context.getSharedPreferences(preferencesName, Context.MODE_WORLD_READABLE).getInt(key, 0);
     }
 
+    /**
+     * Changes are applied to preferences in memory at once and written to storage asynchronously.
+     */
     @Override
-    protected boolean toPersistence(String key, String value) {
+    protected boolean toPersistence(Map<String, Object> changes) {
         Editor edit = context.getSharedPreferences(preferencesName, Context.MODE_WORLD_READABLE).edit();
-        if (value == null) {
-            return edit.remove(key).commit();
+        for (Map.Entry<String, Object> change : changes.entrySet()) {
+            Object value = change.getValue();
+            if (value == null) {
+                edit.remove(change.getKey());
+            } else if (value instanceof Integer) {
+                edit.putInt(change.getKey(), (Integer) value);
+            } else {
+                edit.putString(change.getKey(), (String) value);
+            }
         }
-
-        return edit.putString(key, value).commit();
-    }
-
-    @Override
-    protected boolean toPersistence(String key, int value) {
-        Editor edit = context.getSharedPreferences(preferencesName, Context.MODE_WORLD_READABLE).edit();
-        return edit.putInt(key, value).commit();
+        edit.apply();
+        return true;
     }
 }
@@ -0,0 +1,205 @@
+package my.activity.demo.location;
+
+import java.util.Arrays;
+
+import my.activity.demo.util.Statistics;
+
+/**
+ * Index of cells by cell id with running RSSI statistics of each cell. Cells are kept in open addressing table of
+ * primitive arrays with linear probing, cell is removed from table, when its last measure is removed. Table grows
+ * only when it gets half full, so adding and removing of measures do not allocate objects after warm up.
+ * Unknown RSSI (99) is counted as 0.
+ * <p>
+ * Statistics are kept as exact integer count, sum and sum of squares of RSSI values, so adding and removing of
+ * measures do not accumulate rounding errors, as floating point online updates would do for sliding windows.
+ */
+public class CellIndex {
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int UNKNOWN_RSSI = 99;
+
+    private int[] cellIds;
+    private int[] counts;
+    private long[] sums;
+    private long[] sumsOfSquares;
+    private int mask;
+    private int size;
+
+    public CellIndex() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * @return count of slots, slots without cell have zero count
+     */
+    public int capacity() {
+        return counts.length;
+    }
+
+    /**
+     * @return count of cells in index
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return slot of cell or -1 if cell is not in index
+     */
+    public int indexOf(int cellId) {
+        int slot = find(cellId);
+        return counts[slot] == 0 ? -1 : slot;
+    }
+
+    public int getCellId(int slot) {
+        return cellIds[slot];
+    }
+
+    public int getCount(int slot) {
+        return counts[slot];
+    }
+
+    public double getMean(int slot) {
+        return counts[slot] == 0 ? 0 : (double) sums[slot] / counts[slot];
+    }
+
+    public double getDeviation(int slot) {
+        return Statistics.deviation(counts[slot], sums[slot], sumsOfSquares[slot]);
+    }
+
+    /**
+     * @return new count of measures of cell
+     */
+    public int add(int cellId, int rssi) {
+        return add(cellId, rssi, 1);
+    }
+
+    /**
+     * Adds measure counted given count of times.
+     *
+     * @return new count of measures of cell
+     */
+    public int add(int cellId, int rssi, int weight) {
+        if ((size + 1) * 2 > counts.length) {
+            grow();
+        }
+
+        int slot = find(cellId);
+        if (counts[slot] == 0) {
+            cellIds[slot] = cellId;
+            size++;
+        }
+
+        long value = normalize(rssi);
+        sums[slot] += value * weight;
+        sumsOfSquares[slot] += value * value * weight;
+        counts[slot] += weight;
+        return counts[slot];
+    }
+
+    /**
+     * @return new count of measures of cell
+     */
+    public int remove(int cellId, int rssi) {
+        return remove(cellId, rssi, 1);
+    }
+
+    /**
+     * Removes measure added with given weight.
+     *
+     * @return new count of measures of cell
+     */
+    public int remove(int cellId, int rssi, int weight) {
+        int slot = find(cellId);
+        if (counts[slot] < weight) {
+            throw new IllegalStateException("Cell " + cellId + " has less than " + weight + " measures in index.");
+        }
+
+        long value = normalize(rssi);
+        sums[slot] -= value * weight;
+        sumsOfSquares[slot] -= value * value * weight;
+        counts[slot] -= weight;
+        int count = counts[slot];
+        if (count == 0) {
+            delete(slot);
+        }
+        return count;
+    }
+
+    public void clear() {
+        Arrays.fill(counts, 0);
+        Arrays.fill(sums, 0);
+        Arrays.fill(sumsOfSquares, 0);
+        size = 0;
+    }
+
+    /**
+     * @return slot of cell or empty slot, where cell should be put
+     */
+    private int find(int cellId) {
+        int slot = hash(cellId) & mask;
+        while (counts[slot] != 0 && cellIds[slot] != cellId) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Empties slot and moves following cells of the same probe sequence back, so no deleted markers are needed.
+     */
+    private void delete(int slot) {
+        size--;
+        int empty = slot;
+        int next = (slot + 1) & mask;
+        while (counts[next] != 0) {
+            int home = hash(cellIds[next]) & mask;
+
+            // move cell, if its home slot is not between empty slot and its current slot
+            if (((next - home) & mask) >= ((next - empty) & mask)) {
+                cellIds[empty] = cellIds[next];
+                counts[empty] = counts[next];
+                sums[empty] = sums[next];
+                sumsOfSquares[empty] = sumsOfSquares[next];
+                empty = next;
+            }
+            next = (next + 1) & mask;
+        }
+        counts[empty] = 0;
+        sums[empty] = 0;
+        sumsOfSquares[empty] = 0;
+    }
+
+    private void grow() {
+        int[] oldCellIds = cellIds;
+        int[] oldCounts = counts;
+        long[] oldSums = sums;
+        long[] oldSumsOfSquares = sumsOfSquares;
+
+        allocate(oldCounts.length * 2);
+        for (int i = 0; i < oldCounts.length; i++) {
+            if (oldCounts[i] != 0) {
+                int slot = find(oldCellIds[i]);
+                cellIds[slot] = oldCellIds[i];
+                counts[slot] = oldCounts[i];
+                sums[slot] = oldSums[i];
+                sumsOfSquares[slot] = oldSumsOfSquares[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        cellIds = new int[capacity];
+        counts = new int[capacity];
+        sums = new long[capacity];
+        sumsOfSquares = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    private static int hash(int cellId) {
+        int hash = cellId * 0x9e3779b9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int normalize(int rssi) {
+        return rssi == UNKNOWN_RSSI ? 0 : rssi;
+    }
+}
@@ -1,80 +1,87 @@
 package my.activity.demo.location;
 
-import java.util.ArrayList;
-import java.util.Arrays;
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.List;
-import java.util.ListIterator;
-import java.util.Map;
-import java.util.TreeMap;
 
 import my.activity.demo.Helper;
 import my.activity.demo.listmanager.ListManager;
 import my.activity.demo.listmanager.SharedList;
 import my.activity.demo.listmanager.persistence.file.FileList;
 import my.activity.demo.period.Period;
+import android.app.AlarmManager;
 import android.app.IntentService;
+import android.app.PendingIntent;
+import android.content.Context;
 import android.content.Intent;
+import android.os.Environment;
+import android.os.SystemClock;
 import android.telephony.NeighboringCellInfo;
 import android.telephony.TelephonyManager;
 
 public class CellScanService extends IntentService {
     public static final String LIST_CELL_SCAN = "cell_scan";
 
-    private static class ScanDataItem {
-        private int cellId;
-        private int lac;
-        private int rssi;
-    }
-
-    private static class ScanData {
-        private final List<ScanDataItem> scanItems = new ArrayList<ScanDataItem>();
-        private final Date scanTime;
-
-        private ScanData(Date scanTime) {
-            this.scanTime = scanTime;
-        }
-
-        private void add(int cellId, int lac, int rssi) {
-            ScanDataItem item = new ScanDataItem();
-            item.cellId = cellId;
-            item.lac = lac;
-            item.rssi = rssi;
-
-            scanItems.add(item);
+    // scans are written to journal by batches, and it is synced at most once per interval; journal stays open while
+    // process lives, service is destroyed after each scan, so only unwritten batch is lost if process is killed
+    private static final int JOURNAL_BUFFER_SIZE = 16 * 1024;
+    private static final int JOURNAL_BATCH_SCANS = 10;
+    private static final long JOURNAL_SYNC_INTERVAL = 5 * 60 * 1000;
+    // journal, which can not be opened, is opened again after this time, till then scans are logged as text
+    private static final long JOURNAL_RETRY_INTERVAL = 10 * 60 * 1000;
+
+    // each scan schedules the next one, inexact repeating alarm starts scanning again if scheduled one is lost, when
+    // process is killed or alarm is not delivered
+    private static final long RESTART_INTERVAL = AlarmManager.INTERVAL_FIFTEEN_MINUTES;
+    private static final int SCAN_REQUEST = 0;
+    private static final int RESTART_REQUEST = 1;
+
+    /**
+     * Adds moving periods to 'cell_scan' list.
+     */
+    private static class PeriodListener implements MoveTracker.Listener {
+        private final Context context;
+        private Period currentPeriod;
+
+        private PeriodListener(Context context) {
+            this.context = context;
         }
-    }
-
-    private static class CellCalculatedInfo {
-        private final List<Integer> rssis = new ArrayList<Integer>();
 
-        private double[] getRssis() {
-            double[] result = new double[rssis.size()];
-            for (int i = 0; i < result.length; i++) {
-                result[i] = rssis.get(i) == 99 ? 0 : rssis.get(i);
+        @Override
+        public void movingStarted(long start) {
+            currentPeriod = new Period();
+            currentPeriod.name = "Moving";
+            currentPeriod.start = start;
+
+            // add current period to 'cell_scan' list, its file is replayed only when list is created
+            SharedList<Period> list = ListManager.getList(LIST_CELL_SCAN, Period.class);
+            if (list == null) {
+                list = ListManager.getOrCreateList(LIST_CELL_SCAN,
+                    new FileList<Period>(new Period(), "moving_periods", context));
+            }
+            if (!list.add(currentPeriod)) {
+                Helper.log("cell", "Failed to save moving period.");
             }
-            return result;
         }
 
-        private int getCount() {
-            return rssis.size();
+        @Override
+        public void movingContinued(long end) {
+            currentPeriod.end = end;
         }
 
-        private void addRssi(int rssi) {
-            rssis.add(rssi);
+        @Override
+        public void movingStopped() {
+            currentPeriod = null;
         }
-
     }
 
     private static TelephonyManager telephonyManager;
-
-    private static final List<ScanData> data = new ArrayList<ScanData>();
-    private static Period currentPeriod = new Period();
-
-    private static final int SCAN_HISTORY_SIZE = 60;
-    private static final int SCAN_CELL_COUNT_IGNORE = 1;
-    private static final double MOVE_FUNCTION_THRESHOLD = 25;
-    private static final int DEVIATION_THRESHOLD = 1;
+    private static MoveTracker tracker;
+    private static ScanJournal journal;
+    private static long journalRetryTime;
+    private static volatile boolean stopped;
 
     public CellScanService() {
         super("CellScanService");
@@ -83,6 +90,25 @@ public class CellScanService extends IntentService {
         setIntentRedelivery(false);
     }
 
+    /**
+     * Starts scanning at once, each scan schedules the next one.
+     */
+    public static void startScanning(Context context) {
+        stopped = false;
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(ALARM_SERVICE);
+        alarmManager.setInexactRepeating(AlarmManager.ELAPSED_REALTIME_WAKEUP,
+            SystemClock.elapsedRealtime() + RESTART_INTERVAL, RESTART_INTERVAL,
+            createOperation(context, RESTART_REQUEST));
+        scheduleScan(context, 0);
+    }
+
+    public static void stopScanning(Context context) {
+        stopped = true;
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(ALARM_SERVICE);
+        alarmManager.cancel(createOperation(context, SCAN_REQUEST));
+        alarmManager.cancel(createOperation(context, RESTART_REQUEST));
+    }
+
     @Override
     public void onCreate() {
         super.onCreate();
@@ -90,84 +116,121 @@ public class CellScanService extends IntentService {
         if (telephonyManager == null) {
             telephonyManager = (TelephonyManager) getSystemService(TELEPHONY_SERVICE);
         }
+        if (tracker == null) {
+            tracker = new MoveTracker(true, new PeriodListener(getApplicationContext()));
+        }
     }
 
     @Override
-    protected void onHandleIntent(Intent intent) {
-        Helper.log("cell", "---Scan start at " + Helper.formatNow());
+    public void onDestroy() {
+        super.onDestroy();
 
-        ScanData scanData = new ScanData(new Date());
-        List<NeighboringCellInfo> neighboringCellInfo = telephonyManager.getNeighboringCellInfo();
-        for (NeighboringCellInfo info : neighboringCellInfo) {
-            scanData.add(info.getCid(), info.getLac(), info.getRssi());
-            String string = "Cell ID: " + info.getCid() + ", LAC: " + info.getLac() + ", RSSI: " + info.getRssi();
-            Helper.log("cell", string);
-        }
-        data.add(scanData);
-        Helper.log("cell", "---Processed data size: " + data.size());
+        // service is destroyed after each scan and process may be killed then
+        Helper.flushLog();
+    }
 
-        // if not enough data, then exit
-        if (data.size() < SCAN_HISTORY_SIZE + 1) {
+    @Override
+    protected void onHandleIntent(Intent intent) {
+        if (stopped) {
             return;
         }
 
-        Map<Integer, CellCalculatedInfo> map = new TreeMap<Integer, CellCalculatedInfo>();
-        ListIterator<ScanData> i = data.listIterator(data.size() - 1);
-        int count = SCAN_HISTORY_SIZE;
-        while (count > 0) {
-            for (ScanDataItem item : i.previous().scanItems) {
-                CellCalculatedInfo info = map.get(item.cellId);
-                if (info == null) {
-                    info = new CellCalculatedInfo();
-                    map.put(item.cellId, info);
-                }
-                info.addRssi(item.rssi);
+        // failed scan is lost, but scanning goes on
+        long interval = MoveTracker.SCAN_INTERVAL;
+        try {
+            interval = scan();
+        } finally {
+            if (!stopped) {
+                scheduleScan(this, interval);
             }
-
-            count--;
         }
+    }
 
-        // calculate change of RSSI
-        double rssi = 0;
-        int n = map.size();
-        double[] cellCounts = new double[n];
-        int index = 0;
-        for (CellCalculatedInfo info : map.values()) {
-            if (info.getCount() > SCAN_CELL_COUNT_IGNORE) {
-                cellCounts[index++] = info.getCount();
-                rssi += Helper.deviation(info.getRssis());
+    /**
+     * @return interval till the next scan
+     */
+    private long scan() {
+        long scanTime = System.currentTimeMillis();
+        ScanJournal scanJournal = getJournal();
+
+        tracker.scanStarted(scanTime);
+        if (scanJournal != null) {
+            scanJournal.scanStarted(scanTime);
+        } else {
+            Helper.log("cell", "---Scan start at " + Helper.format(scanTime));
+        }
+        List<NeighboringCellInfo> neighboringCellInfo = telephonyManager.getNeighboringCellInfo();
+        for (NeighboringCellInfo info : neighboringCellInfo) {
+            tracker.cellScanned(info.getCid(), info.getLac(), info.getRssi());
+            if (scanJournal != null) {
+                scanJournal.cellScanned(info.getCid(), info.getLac(), info.getRssi());
+            } else {
+                String string = "Cell ID: " + info.getCid() + ", LAC: " + info.getLac() + ", RSSI: " + info.getRssi();
+                Helper.log("cell", string);
             }
         }
-        cellCounts = Arrays.copyOf(cellCounts, index);
-
-        // average and deviation
-        double deviation = Helper.deviation(cellCounts);
-
-        // calculate move function
-        double moveFunction = rssi * rssi / deviation / deviation;
-        if (deviation < DEVIATION_THRESHOLD) {
-            moveFunction = deviation;
+        if (scanJournal != null) {
+            try {
+                scanJournal.scanFinished();
+            } catch (IOException e) {
+                // journal is opened again like journal which failed to open, scans of the batch are lost
+                dropJournal();
+                Helper.log("cell", "Failed to write scan journal, scans are logged as text.", e);
+            }
+        } else {
+            Helper.log("cell", "---Processed data size: " + tracker.getScanCount());
         }
 
-        // calculate move periods
-        boolean moved = moveFunction > MOVE_FUNCTION_THRESHOLD;
-        if (moved) {
-            if (currentPeriod == null) {
-                currentPeriod = new Period();
-                currentPeriod.name = "Moving";
-                currentPeriod.start = data.get(data.size() - SCAN_HISTORY_SIZE).scanTime.getTime();
+        return tracker.scanFinished();
+    }
 
-                // add current period to 'cell_scan' list
-                ListManager.getOrCreateList(LIST_CELL_SCAN, createList()).add(currentPeriod);
+    /**
+     * @return journal of scans, opened on first scan, or null if it can not be opened, then opening is retried after
+     *         retry interval
+     */
+    private static ScanJournal getJournal() {
+        if (journal == null && System.currentTimeMillis() >= journalRetryTime) {
+            String date = new SimpleDateFormat("dd-MM-yyyy 'at' HH-mm").format(new Date());
+            File file = new File(Environment.getExternalStorageDirectory(), ".logs/SCAN [" + date + "]"
+                + ScanJournal.EXTENSION);
+            try {
+                file.getParentFile().mkdirs();
+                journal = new ScanJournal(file, JOURNAL_BUFFER_SIZE, JOURNAL_BATCH_SCANS, JOURNAL_SYNC_INTERVAL);
+            } catch (IOException e) {
+                journalRetryTime = System.currentTimeMillis() + JOURNAL_RETRY_INTERVAL;
+                Helper.log("cell", "Failed to open scan journal '" + file + "', scans are logged as text.", e);
             }
+        }
+        return journal;
+    }
 
-            currentPeriod.end = data.get(data.size() - 1).scanTime.getTime();
-        } else if (currentPeriod != null) {
-            currentPeriod = null;
+    /**
+     * Closes journal, which failed to write, it is opened again after retry interval.
+     */
+    private static void dropJournal() {
+        try {
+            journal.close();
+        } catch (IOException e) {
+            // file is closed anyway
         }
+        journal = null;
+        journalRetryTime = System.currentTimeMillis() + JOURNAL_RETRY_INTERVAL;
+    }
+
+    /**
+     * Replaces scheduled scan, scan started by restart alarm meanwhile does not start another chain of scans.
+     */
+    private static void scheduleScan(Context context, long delay) {
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(ALARM_SERVICE);
+        alarmManager.set(AlarmManager.ELAPSED_REALTIME_WAKEUP, SystemClock.elapsedRealtime() + delay,
+            createOperation(context, SCAN_REQUEST));
     }
 
-    private SharedList<Period> createList() {
-        return new FileList<Period>(new Period(), "moving_periods", getApplicationContext());
+    /**
+     * @param request code of request, operations with different codes are separate alarms
+     */
+    private static PendingIntent createOperation(Context context, int request) {
+        Intent intent = new Intent(context.getApplicationContext(), CellScanService.class);
+        return PendingIntent.getService(context, request, intent, 0);
     }
 }
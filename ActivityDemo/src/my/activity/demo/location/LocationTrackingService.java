@@ -4,6 +4,7 @@ import static my.activity.demo.Helper.log;
 
 import java.lang.Thread.UncaughtExceptionHandler;
 
+import my.activity.demo.Helper;
 import android.app.Service;
 import android.content.Context;
 import android.content.Intent;
@@ -35,6 +36,7 @@ public class LocationTrackingService extends Service {
     public void onLowMemory() {
         super.onLowMemory();
         log("service", "onLowMemory");
+        Helper.flushLog();
     }
 
     @Override
@@ -69,6 +71,7 @@ public class LocationTrackingService extends Service {
 
         // clear notification
         serviceHandler.cancelNotification();
+        Helper.flushLog();
     }
 
     private void unregisterLocationListener() {
@@ -210,21 +210,34 @@ public final class MessageLoopHandler extends Handler {
     }
 
     private void startPeriod(boolean isStable) {
-        // end previous period
-        int size = list.size();
-        if (size > 0) {
-            Period lastPeriod = list.get(size - 1);
-            lastPeriod.end = lastStateChangeTime;
-
-            list.remove(size - 1);
-            list.add(lastPeriod);
-        }
+        // end previous period and start new one, listeners see both changes at once
+        boolean saved;
+        list.beginBatch();
+        try {
+            int size = list.size();
+            if (size > 0) {
+                // item got from list may be shared by its cache, so ended period is a copy
+                Period lastPeriod = list.get(size - 1);
+                Period endedPeriod = new Period();
+                endedPeriod.name = lastPeriod.name;
+                endedPeriod.start = lastPeriod.start;
+                endedPeriod.end = lastStateChangeTime;
+
+                list.remove(size - 1);
+                list.add(endedPeriod);
+            }
 
-        Period period = new Period();
-        period.name = isStable ? "stable" : "moving";
-        period.start = lastStateChangeTime;
-        period.end = 0;
-        list.add(period);
+            Period period = new Period();
+            period.name = isStable ? "stable" : "moving";
+            period.start = lastStateChangeTime;
+            period.end = 0;
+            list.add(period);
+        } finally {
+            saved = list.endBatch();
+        }
+        if (!saved) {
+            log("handler", "Failed to save periods.");
+        }
 
         log("handler", "Period started, last change time " + Helper.format(lastStateChangeTime) + ", stable " + isStable);
     }
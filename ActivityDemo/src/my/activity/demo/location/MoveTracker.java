@@ -0,0 +1,156 @@
+package my.activity.demo.location;
+
+/**
+ * Move detection of CellScanService: scans are fed in as they are scanned, move function is calculated over the
+ * window of preceding scans and moving periods are reported to listener. Plain Java, so the same code is run on
+ * device and replayed over recorded scans by logs analyzer. Instance is not thread safe.
+ */
+public class MoveTracker implements ScanConsumer {
+    public interface Listener {
+        void movingStarted(long start);
+
+        void movingContinued(long end);
+
+        void movingStopped();
+    }
+
+    public static final int SCAN_HISTORY_SIZE = 60;
+    public static final int EXPECTED_CELL_COUNT = 16;
+    public static final int SCAN_CELL_COUNT_IGNORE = 1;
+    public static final double MOVE_FUNCTION_THRESHOLD = 25;
+    public static final int DEVIATION_THRESHOLD = 1;
+
+    // scan interval is doubled after each series of stable scans up to the longest one
+    public static final long SCAN_INTERVAL = 10 * 1000;
+    public static final long LONGEST_SCAN_INTERVAL = 40 * 1000;
+    public static final double STABLE_MOVE_FUNCTION = MOVE_FUNCTION_THRESHOLD / 10;
+    public static final int STABLE_SCAN_COUNT = 6;
+
+    private final Listener listener;
+    private final ScanScheduler scheduler;
+
+    // window of scans, scan leaving the window and the last scan
+    private final ScanRing data = new ScanRing(SCAN_HISTORY_SIZE + 2, (SCAN_HISTORY_SIZE + 2) * EXPECTED_CELL_COUNT);
+    private final MoveWindow window = new MoveWindow(SCAN_CELL_COUNT_IGNORE);
+
+    // weights of scans in count of scan intervals they cover, window is the shortest range of scans before the last
+    // one, which covers SCAN_HISTORY_SIZE intervals, so it covers the same time at any scan rate
+    private final int[] scanWeights = new int[SCAN_HISTORY_SIZE + 2];
+    private int windowStart;
+    private int windowWeight;
+
+    private boolean newCell;
+    private double moveFunction = Double.NaN;
+    private boolean moving;
+
+    /**
+     * @param adaptive true if scan interval is chosen by move function, false if scans are taken at fixed rate of
+     *            {@link #SCAN_INTERVAL}
+     */
+    public MoveTracker(boolean adaptive, Listener listener) {
+        this.listener = listener;
+        this.scheduler = new ScanScheduler(SCAN_INTERVAL, adaptive ? LONGEST_SCAN_INTERVAL : SCAN_INTERVAL,
+            STABLE_MOVE_FUNCTION, STABLE_SCAN_COUNT);
+    }
+
+    /**
+     * @return count of scans ever started
+     */
+    public int getScanCount() {
+        return data.size();
+    }
+
+    /**
+     * @return move function of the last finished scan or NaN if window was not full
+     */
+    public double getMoveFunction() {
+        return moveFunction;
+    }
+
+    public boolean isMoving() {
+        return moving;
+    }
+
+    @Override
+    public void scanStarted(long scanTime) {
+        data.scanStarted(scanTime);
+        newCell = false;
+    }
+
+    @Override
+    public void cellScanned(int cellId, int lac, int rssi) {
+        data.cellScanned(cellId, lac, rssi);
+        newCell |= !window.contains(cellId);
+    }
+
+    /**
+     * Calculates move function when all cells of scan are scanned.
+     *
+     * @return interval till the next scan
+     */
+    public long scanFinished() {
+        // window slides by one scan: it gets the previous scan and loses scans, which are not needed to cover it
+        int lastScan = data.size() - 1;
+        scanWeights[lastScan % scanWeights.length] = scheduler.getWeight();
+        if (lastScan >= 1) {
+            addToWindow(lastScan - 1);
+        }
+        while (windowWeight - getWeight(windowStart) >= SCAN_HISTORY_SIZE) {
+            removeFromWindow(windowStart);
+        }
+
+        // if not enough data, then scan often till window is full
+        if (windowWeight < SCAN_HISTORY_SIZE) {
+            moveFunction = Double.NaN;
+            scheduler.reset();
+            return scheduler.getInterval();
+        }
+
+        // calculate change of RSSI
+        double rssi = window.getRssiDeviation();
+
+        // average and deviation
+        double deviation = window.getCountDeviation();
+
+        // calculate move function
+        moveFunction = rssi * rssi / deviation / deviation;
+        if (deviation < DEVIATION_THRESHOLD) {
+            moveFunction = deviation;
+        }
+
+        // calculate move periods
+        if (moveFunction > MOVE_FUNCTION_THRESHOLD) {
+            if (!moving) {
+                moving = true;
+                listener.movingStarted(data.getScanTime(windowStart + 1));
+            }
+            listener.movingContinued(data.getScanTime(lastScan));
+        } else if (moving) {
+            moving = false;
+            listener.movingStopped();
+        }
+
+        return scheduler.update(moveFunction, newCell);
+    }
+
+    private int getWeight(int scan) {
+        return scanWeights[scan % scanWeights.length];
+    }
+
+    private void addToWindow(int scan) {
+        int weight = getWeight(scan);
+        for (int cell = data.getCellsStart(scan); cell < data.getCellsEnd(scan); cell++) {
+            window.add(data.getCellId(cell), data.getRssi(cell), weight);
+        }
+        windowWeight += weight;
+    }
+
+    private void removeFromWindow(int scan) {
+        int weight = getWeight(scan);
+        for (int cell = data.getCellsStart(scan); cell < data.getCellsEnd(scan); cell++) {
+            window.remove(data.getCellId(cell), data.getRssi(cell), weight);
+        }
+        windowWeight -= weight;
+        windowStart++;
+    }
+}
@@ -0,0 +1,124 @@
+package my.activity.demo.location;
+
+import java.util.Arrays;
+
+import my.activity.demo.util.Statistics;
+
+/**
+ * Sliding window of cell measures used to calculate move function.
+ * Scans are added when they enter the window and removed when they leave it, per cell running count, sum and sum
+ * of squares are kept, so window is updated in time proportional to the count of cells in added/removed scan.
+ * RSSI deviation is not kept as running sum: deviation of cell is square root of its variance, so the sum would
+ * have to be updated by differences of deviations and its rounding errors would accumulate. It is summed over
+ * counted cells when requested instead, in order of cell id as the TreeMap of the original calculation did, which
+ * costs time proportional to the count of counted cells per calculated value. Cell deviation is calculated from
+ * running sums, not in two passes as originally, so it may differ in the last bits, but move function printed with
+ * two decimals and detected periods of bundled logs are the same as with the original calculation.
+ * Scan may be added with weight, then its measures are counted as if the scan was repeated weight times, so scans
+ * taken at longer intervals stand for the time they cover.
+ * Used by CellScanService on device and by logs analyzer, so both calculate the same move function.
+ */
+public class MoveWindow {
+    private final CellIndex cells = new CellIndex();
+    private final int ignoreCells;
+
+    // statistics of measures counts for cells, that are not ignored
+    private int countedCells;
+    private long countSum;
+    private long countSumOfSquares;
+
+    // ids of not ignored cells, sorted to sum deviations always in the same order
+    private int[] countedIds = new int[16];
+
+    public MoveWindow(int ignoreCells) {
+        this.ignoreCells = ignoreCells;
+    }
+
+    public void add(int cellId, int rssi) {
+        add(cellId, rssi, 1);
+    }
+
+    public void add(int cellId, int rssi, int weight) {
+        int count = cells.add(cellId, rssi, weight);
+        uncount(count - weight);
+        count(count);
+        if (count - weight <= ignoreCells && count > ignoreCells) {
+            insertCounted(cellId);
+        }
+    }
+
+    public void remove(int cellId, int rssi) {
+        remove(cellId, rssi, 1);
+    }
+
+    public void remove(int cellId, int rssi, int weight) {
+        int count = cells.remove(cellId, rssi, weight);
+        uncount(count + weight);
+        count(count);
+        if (count <= ignoreCells && count + weight > ignoreCells) {
+            removeCounted(cellId);
+        }
+    }
+
+    /**
+     * @return true if cell has any measure in window
+     */
+    public boolean contains(int cellId) {
+        return cells.indexOf(cellId) >= 0;
+    }
+
+    public void clear() {
+        cells.clear();
+        countedCells = 0;
+        countSum = 0;
+        countSumOfSquares = 0;
+    }
+
+    /**
+     * @return sum of RSSI deviations of not ignored cells, summed in order of cell id, see class comment
+     */
+    public double getRssiDeviation() {
+        double rssi = 0;
+        for (int i = 0; i < countedCells; i++) {
+            rssi += cells.getDeviation(cells.indexOf(countedIds[i]));
+        }
+        return rssi;
+    }
+
+    /**
+     * @return deviation of measures counts of not ignored cells
+     */
+    public double getCountDeviation() {
+        return Statistics.deviation(countedCells, countSum, countSumOfSquares);
+    }
+
+    private void insertCounted(int cellId) {
+        if (countedIds.length < countedCells) {
+            countedIds = Arrays.copyOf(countedIds, countedIds.length * 2);
+        }
+        int position = -Arrays.binarySearch(countedIds, 0, countedCells - 1, cellId) - 1;
+        System.arraycopy(countedIds, position, countedIds, position + 1, countedCells - 1 - position);
+        countedIds[position] = cellId;
+    }
+
+    private void removeCounted(int cellId) {
+        int position = Arrays.binarySearch(countedIds, 0, countedCells + 1, cellId);
+        System.arraycopy(countedIds, position + 1, countedIds, position, countedCells - position);
+    }
+
+    private void count(int count) {
+        if (count > ignoreCells) {
+            countedCells++;
+            countSum += count;
+            countSumOfSquares += (long) count * count;
+        }
+    }
+
+    private void uncount(int count) {
+        if (count > ignoreCells) {
+            countedCells--;
+            countSum -= count;
+            countSumOfSquares -= (long) count * count;
+        }
+    }
+}
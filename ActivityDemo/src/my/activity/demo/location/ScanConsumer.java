@@ -0,0 +1,10 @@
+package my.activity.demo.location;
+
+/**
+ * Receives scans in order of scanning, cells are scanned after their scan is started.
+ */
+public interface ScanConsumer {
+    void scanStarted(long scanTime);
+
+    void cellScanned(int cellId, int lac, int rssi);
+}
@@ -0,0 +1,24 @@
+package my.activity.demo.location;
+
+/**
+ * Scans of cells in order of scanning. Scans and cells are addressed by index, cells of scan are
+ * [getCellsStart(scan), getCellsEnd(scan)).
+ */
+public interface ScanHistory {
+    /**
+     * @return count of scans ever added, index of the next scan
+     */
+    int size();
+
+    long getScanTime(int scan);
+
+    int getCellsStart(int scan);
+
+    int getCellsEnd(int scan);
+
+    int getCellId(int cell);
+
+    int getLac(int cell);
+
+    int getRssi(int cell);
+}
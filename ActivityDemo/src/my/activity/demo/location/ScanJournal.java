@@ -0,0 +1,258 @@
+package my.activity.demo.location;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Append only binary journal of cell scans. After header each scan is a record of scan time and count of cells
+ * followed by cell ID, LAC and RSSI of each cell, all little endian, 12 bytes per scan and 10 bytes per cell. Records
+ * are collected in buffer and written by batches of scans, and file is synced to storage at most once per sync
+ * interval, so a crash loses only scans which are not synced yet. Incomplete record at the end of file is ignored by
+ * reader and cut off when journal is opened for appending again.
+ */
+public class ScanJournal implements ScanConsumer {
+    public static final String EXTENSION = ".journal";
+    public static final int HEADER_SIZE = 8;
+
+    private static final int MAGIC = 0x4e52534a;
+    private static final int VERSION = 1;
+    private static final int SCAN_SIZE = 12;
+    private static final int CELL_SIZE = 10;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final int batchScans;
+    private final long syncInterval;
+    private ByteBuffer buffer;
+
+    // start of the current record in buffer or -1 if scan is finished
+    private int recordStart = -1;
+    private int cellCount;
+    private int bufferedScans;
+    private long lastSync;
+
+    /**
+     * Opens journal for appending, new journal is created if file does not exist.
+     *
+     * @param bufferSize initial size of buffer, it grows if batch does not fit into it
+     * @param batchScans count of scans collected before they are written to file
+     * @param syncInterval minimal time between syncs of file to storage in milliseconds
+     */
+    public ScanJournal(File file, int bufferSize, int batchScans, long syncInterval) throws IOException {
+        this.file = new RandomAccessFile(file, "rw");
+        this.channel = this.file.getChannel();
+        this.batchScans = batchScans;
+        this.syncInterval = syncInterval;
+        buffer = ByteBuffer.allocate(Math.max(bufferSize, SCAN_SIZE + CELL_SIZE));
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        try {
+            if (channel.size() < HEADER_SIZE) {
+                buffer.putInt(MAGIC);
+                buffer.putInt(VERSION);
+                write();
+            } else {
+                channel.truncate(findEnd());
+                channel.position(channel.size());
+            }
+        } catch (IOException e) {
+            this.file.close();
+            throw e;
+        }
+        lastSync = System.currentTimeMillis();
+    }
+
+    public static boolean isJournal(File file) {
+        return file.getName().endsWith(EXTENSION);
+    }
+
+    @Override
+    public void scanStarted(long scanTime) {
+        completeRecord();
+
+        ensureRemaining(SCAN_SIZE);
+        recordStart = buffer.position();
+        cellCount = 0;
+        buffer.putLong(scanTime);
+        buffer.putInt(0);
+    }
+
+    @Override
+    public void cellScanned(int cellId, int lac, int rssi) {
+        if (recordStart < 0) {
+            throw new IllegalStateException("Cell is scanned before scan is started.");
+        }
+
+        ensureRemaining(CELL_SIZE);
+        buffer.putInt(cellId);
+        buffer.putInt(lac);
+        buffer.putShort((short) rssi);
+        cellCount++;
+    }
+
+    /**
+     * Completes the current scan, batch of scans is written to file when it is full.
+     */
+    public void scanFinished() throws IOException {
+        completeRecord();
+        if (bufferedScans >= batchScans) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes completed scans to file and syncs file if sync interval is passed since the last sync.
+     */
+    public void flush() throws IOException {
+        completeRecord();
+        write();
+
+        long now = System.currentTimeMillis();
+        if (now - lastSync >= syncInterval) {
+            channel.force(false);
+            lastSync = now;
+        }
+    }
+
+    public void close() throws IOException {
+        try {
+            completeRecord();
+            write();
+            channel.force(false);
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Passes complete scans of journal file to consumer.
+     *
+     * @return count of read scans and cells
+     */
+    public static int read(File file, ScanConsumer consumer) throws IOException {
+        RandomAccessFile input = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = input.getChannel();
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Journal '" + file + "' is too large to be mapped.");
+            }
+
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (!isHeader(buffer, 0)) {
+                throw new IOException("File '" + file + "' is not a scan journal.");
+            }
+            int[] count = new int[1];
+            parse(buffer, HEADER_SIZE, buffer.limit(), consumer, count);
+            return count[0];
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * @return true if buffer has journal header of supported version at position
+     */
+    public static boolean isHeader(ByteBuffer buffer, int position) {
+        return buffer.limit() - position >= HEADER_SIZE && buffer.getInt(position) == MAGIC
+            && buffer.getInt(position + 4) == VERSION;
+    }
+
+    /**
+     * Passes complete records between positions of little endian buffer to consumer.
+     *
+     * @param count if not null, count of passed scans and cells is added to its first element
+     * @return position after the last complete record
+     */
+    public static int parse(ByteBuffer buffer, int from, int to, ScanConsumer consumer, int[] count) {
+        int position = from;
+        while (to - position >= SCAN_SIZE) {
+            int cells = buffer.getInt(position + 8);
+            if (cells < 0 || (to - position - SCAN_SIZE) / CELL_SIZE < cells) {
+                break;
+            }
+
+            consumer.scanStarted(buffer.getLong(position));
+            position += SCAN_SIZE;
+            for (int cell = 0; cell < cells; cell++) {
+                consumer.cellScanned(buffer.getInt(position), buffer.getInt(position + 4), buffer.getShort(position + 8));
+                position += CELL_SIZE;
+            }
+            if (count != null) {
+                count[0] += 1 + cells;
+            }
+        }
+        return position;
+    }
+
+    /**
+     * @return position after the last complete record of file
+     */
+    private long findEnd() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(SCAN_SIZE);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        channel.read(header, 0);
+        if (!isHeader(header, 0)) {
+            throw new IOException("File is not a scan journal.");
+        }
+
+        long size = channel.size();
+        long position = HEADER_SIZE;
+        while (size - position >= SCAN_SIZE) {
+            header.clear();
+            while (header.hasRemaining() && channel.read(header, position + header.position()) >= 0) {
+                // read till limit
+            }
+            int cells = header.getInt(8);
+            if (cells < 0 || (size - position - SCAN_SIZE) / CELL_SIZE < cells) {
+                break;
+            }
+            position += SCAN_SIZE + (long) cells * CELL_SIZE;
+        }
+        return position;
+    }
+
+    private void completeRecord() {
+        if (recordStart < 0) {
+            return;
+        }
+        buffer.putInt(recordStart + 8, cellCount);
+        recordStart = -1;
+        bufferedScans++;
+    }
+
+    /**
+     * Makes room for bytes of the current record, buffer grows if batch does not fit into it.
+     */
+    private void ensureRemaining(int size) {
+        if (buffer.remaining() >= size) {
+            return;
+        }
+
+        ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + size));
+        larger.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.flip();
+        larger.put(buffer);
+        buffer = larger;
+    }
+
+    /**
+     * Writes buffered records to file. If write fails, records which are not written stay in buffer, so they are
+     * written by the next write after records written already.
+     */
+    private void write() throws IOException {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } finally {
+            buffer.compact();
+        }
+        bufferedScans = 0;
+    }
+}
@@ -0,0 +1,138 @@
+package my.activity.demo.location;
+
+/**
+ * Scan history keeping only the last scans in primitive ring arrays, which are reused in place. Scans and cells keep
+ * their indexes as they were added, but only scans from {@link #getFirstScan()} can be read. Cell arrays grow when
+ * retained scans have more cells than they can hold, so after warm up memory stays the same however long the scanning
+ * goes on.
+ */
+public class ScanRing implements ScanHistory, ScanConsumer {
+    private final long[] scanTimes;
+    private final int[] cellOffsets;
+    private final int scanMask;
+    private int scanCount;
+
+    private int[] cellIds;
+    private int[] lacs;
+    private int[] rssis;
+    private int cellMask;
+    private int cellCount;
+
+    /**
+     * @param scanCapacity count of the last scans to keep
+     * @param cellCapacity expected count of cells in the last scans
+     */
+    public ScanRing(int scanCapacity, int cellCapacity) {
+        // power of two slots, more than capacity
+        int scanSlots = Integer.highestOneBit(Math.max(scanCapacity, 1)) << 1;
+        scanTimes = new long[scanSlots];
+        cellOffsets = new int[scanSlots];
+        scanMask = scanSlots - 1;
+
+        int cellSlots = Integer.highestOneBit(Math.max(cellCapacity - 1, 1)) << 1;
+        cellIds = new int[cellSlots];
+        lacs = new int[cellSlots];
+        rssis = new int[cellSlots];
+        cellMask = cellSlots - 1;
+    }
+
+    @Override
+    public int size() {
+        return scanCount;
+    }
+
+    /**
+     * @return index of the oldest scan which can be read
+     */
+    public int getFirstScan() {
+        return Math.max(scanCount - scanMask, 0);
+    }
+
+    @Override
+    public long getScanTime(int scan) {
+        checkScan(scan);
+        return scanTimes[scan & scanMask];
+    }
+
+    @Override
+    public int getCellsStart(int scan) {
+        checkScan(scan);
+        return cellOffsets[scan & scanMask];
+    }
+
+    @Override
+    public int getCellsEnd(int scan) {
+        checkScan(scan);
+        return scan + 1 == scanCount ? cellCount : cellOffsets[(scan + 1) & scanMask];
+    }
+
+    @Override
+    public int getCellId(int cell) {
+        return cellIds[cell & cellMask];
+    }
+
+    @Override
+    public int getLac(int cell) {
+        return lacs[cell & cellMask];
+    }
+
+    @Override
+    public int getRssi(int cell) {
+        return rssis[cell & cellMask];
+    }
+
+    /**
+     * Adds new scan, the oldest scan is dropped if ring is full.
+     */
+    @Override
+    public void scanStarted(long scanTime) {
+        scanTimes[scanCount & scanMask] = scanTime;
+        cellOffsets[scanCount & scanMask] = cellCount;
+        scanCount++;
+    }
+
+    /**
+     * Adds cell to the last scan.
+     */
+    @Override
+    public void cellScanned(int cellId, int lac, int rssi) {
+        if (scanCount == 0) {
+            throw new IllegalStateException("Cell is scanned before scan is started.");
+        }
+
+        if (cellCount - getCellsStart(getFirstScan()) > cellMask) {
+            grow();
+        }
+        cellIds[cellCount & cellMask] = cellId;
+        lacs[cellCount & cellMask] = lac;
+        rssis[cellCount & cellMask] = rssi;
+        cellCount++;
+    }
+
+    private void checkScan(int scan) {
+        if (scan < getFirstScan() || scan >= scanCount) {
+            throw new IndexOutOfBoundsException("Scan " + scan + " is not in [" + getFirstScan() + ", " + scanCount
+                + ").");
+        }
+    }
+
+    /**
+     * Doubles cell arrays, cells keep their indexes.
+     */
+    private void grow() {
+        int[] oldCellIds = cellIds;
+        int[] oldLacs = lacs;
+        int[] oldRssis = rssis;
+        int oldMask = cellMask;
+
+        cellMask = cellMask * 2 + 1;
+        cellIds = new int[cellMask + 1];
+        lacs = new int[cellMask + 1];
+        rssis = new int[cellMask + 1];
+        for (int cell = getCellsStart(getFirstScan()); cell < cellCount; cell++) {
+            cellIds[cell & cellMask] = oldCellIds[cell & oldMask];
+            lacs[cell & cellMask] = oldLacs[cell & oldMask];
+            rssis[cell & cellMask] = oldRssis[cell & oldMask];
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package my.activity.demo.location;
+
+/**
+ * Chooses interval till the next cell scan by move function. While move function stays below stable level, interval
+ * is doubled after each series of stable scans up to the longest interval, and it is reset to the shortest one as
+ * soon as move function rises to stable level or a cell unknown to window appears. Interval is always a multiple of
+ * the shortest one, the multiplier is used as weight of the next scan in window, so window covers the same time
+ * whatever the intervals are.
+ */
+public class ScanScheduler {
+    private final long shortestInterval;
+    private final int longestWeight;
+    private final double stableLevel;
+    private final int stableScans;
+
+    private int weight = 1;
+    private int stableCount;
+
+    /**
+     * @param stableLevel move function below this level means that device stays still
+     * @param stableScans count of stable scans before interval is doubled
+     */
+    public ScanScheduler(long shortestInterval, long longestInterval, double stableLevel, int stableScans) {
+        this.shortestInterval = shortestInterval;
+        this.longestWeight = (int) Math.max(longestInterval / shortestInterval, 1);
+        this.stableLevel = stableLevel;
+        this.stableScans = stableScans;
+    }
+
+    /**
+     * @return interval till the next scan
+     */
+    public long getInterval() {
+        return shortestInterval * weight;
+    }
+
+    /**
+     * @return count of the shortest intervals till the next scan
+     */
+    public int getWeight() {
+        return weight;
+    }
+
+    /**
+     * Returns to the shortest interval.
+     */
+    public void reset() {
+        weight = 1;
+        stableCount = 0;
+    }
+
+    /**
+     * @param newCell true if scan has cell, which is not in window
+     * @return interval till the next scan
+     */
+    public long update(double moveFunction, boolean newCell) {
+        if (newCell || !(moveFunction < stableLevel)) {
+            reset();
+        } else if (++stableCount >= stableScans) {
+            weight = Math.min(weight * 2, longestWeight);
+            stableCount = 0;
+        }
+        return getInterval();
+    }
+}
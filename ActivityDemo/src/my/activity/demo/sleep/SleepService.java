@@ -1,6 +1,9 @@
 package my.activity.demo.sleep;
 
 import static my.activity.demo.Helper.log;
+
+import java.util.Arrays;
+
 import my.activity.demo.Helper;
 import my.activity.demo.R;
 import my.activity.demo.listmanager.ListManager;
@@ -46,6 +49,7 @@ public class SleepService extends Service {
     public void onLowMemory() {
         super.onLowMemory();
         log("sleep_service", "onLowMemory");
+        Helper.flushLog();
     }
 
     @Override
@@ -55,6 +59,7 @@ public class SleepService extends Service {
 
         serviceHandler.getLooper().quit();
         notificationManager.cancel(NOTIFICATION_ID);
+        Helper.flushLog();
     }
 
     @Override
@@ -103,17 +108,16 @@ public class SleepService extends Service {
 
                     // phone slept between now and previous time
                     // assume it woke up at now, so whole sleep time till now is sleep period
-                    Period period = new Period();
-                    period.name = "live";
-                    period.start = adjust + lastWakeTime;
-                    period.end = adjust + previousMoment;
-                    list.add(period);
-
-                    period = new Period();
-                    period.name = "sleep";
-                    period.start = adjust + previousMoment;
-                    period.end = adjust + now;
-                    list.add(period);
+                    Period live = new Period();
+                    live.name = "live";
+                    live.start = adjust + lastWakeTime;
+                    live.end = adjust + previousMoment;
+
+                    Period sleep = new Period();
+                    sleep.name = "sleep";
+                    sleep.start = adjust + previousMoment;
+                    sleep.end = adjust + now;
+                    list.addAll(Arrays.asList(live, sleep));
 
                     // refresh last wake time
                     lastWakeTime = now;
@@ -0,0 +1,133 @@
+package my.activity.demo.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock free queue of log records with many producers and one consumer. Records are kept in ring of reused
+ * slots, each slot has sequence number telling whether it is free for the producer of given position or published
+ * for the consumer, so producer claims position with one compare and set and never waits for other threads. When
+ * queue is full, record is dropped and counted instead of blocking the caller.
+ */
+public class LogQueue {
+    public interface Consumer {
+        void record(long time, String tag, String message, Throwable cause);
+    }
+
+    private static class Record {
+        private long time;
+        private String tag;
+        private String message;
+        private Throwable cause;
+    }
+
+    private final Record[] records;
+    private final AtomicLongArray sequences;
+    private final int mask;
+
+    // next position to be claimed by producers
+    private final AtomicLong tail = new AtomicLong();
+    // next position to be read, written by consumer only
+    private volatile long head;
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * @param capacity count of records, rounded up to power of two
+     */
+    public LogQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        records = new Record[size];
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            records[i] = new Record();
+            sequences.set(i, i);
+        }
+        mask = size - 1;
+    }
+
+    public int capacity() {
+        return records.length;
+    }
+
+    /**
+     * @return count of records waiting for consumer
+     */
+    public int size() {
+        return (int) Math.max(tail.get() - head, 0);
+    }
+
+    /**
+     * @return count of records dropped because queue was full
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Adds record without blocking.
+     *
+     * @return false if queue is full and record is dropped
+     */
+    public boolean offer(long time, String tag, String message, Throwable cause) {
+        long position = tail.get();
+        int slot;
+        while (true) {
+            slot = (int) position & mask;
+            long sequence = sequences.get(slot);
+            if (sequence == position) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = tail.get();
+            } else if (sequence < position) {
+                // slot is not read yet since the previous round
+                dropped.incrementAndGet();
+                return false;
+            } else {
+                // other producer claimed position
+                position = tail.get();
+            }
+        }
+
+        Record record = records[slot];
+        record.time = time;
+        record.tag = tag;
+        record.message = message;
+        record.cause = cause;
+        sequences.lazySet(slot, position + 1);
+        return true;
+    }
+
+    /**
+     * Passes published records to consumer in order of their positions, should be called by one thread only.
+     *
+     * @return count of passed records
+     */
+    public int drain(Consumer consumer, int maxCount) {
+        int count = 0;
+        long position = head;
+        while (count < maxCount) {
+            int slot = (int) position & mask;
+            if (sequences.get(slot) != position + 1) {
+                break;
+            }
+
+            // slot is freed before record is consumed, so failed consumer does not block the queue
+            Record record = records[slot];
+            long time = record.time;
+            String tag = record.tag;
+            String message = record.message;
+            Throwable cause = record.cause;
+            record.tag = null;
+            record.message = null;
+            record.cause = null;
+            sequences.lazySet(slot, position + records.length);
+            position++;
+            head = position;
+            count++;
+
+            consumer.record(time, tag, message, cause);
+        }
+        return count;
+    }
+}
@@ -0,0 +1,191 @@
+package my.activity.demo.util;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous log: callers put records into {@link LogQueue} and return at once, one background thread drains
+ * queue, formats records as "dd-MM-yyyy HH:mm:ss.SSS [tag]: message" lines and writes them to output by large
+ * batches. Batch is written when it gets large enough, when flush interval is passed since the oldest record of it or
+ * when log is flushed or closed. Writer thread sleeps while there is nothing to write and is woken up when queue gets half
+ * full, so records are not dropped by bursts. Count of dropped records is written to log as soon as they are noticed.
+ */
+public class LogWriter implements LogQueue.Consumer {
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+    private final LogQueue queue;
+    private final Writer output;
+    private final LogQueue.Consumer echo;
+    private final int batchSize;
+    private final long flushInterval;
+    private final Thread thread;
+
+    private final TimestampCodec timestamps = new TimestampCodec();
+    private final StringBuilder batch;
+    private char[] chars = new char[0];
+    private long batchStart;
+    private long reportedDropped;
+
+    private volatile boolean sleeping;
+    private volatile boolean flushing;
+    private volatile boolean closed;
+
+    /**
+     * @param output output of log lines or null if records are only passed to echo
+     * @param echo consumer, which gets each record on writer thread, like system log, or null
+     * @param batchSize count of chars collected before they are written to output
+     * @param flushInterval the longest time in milliseconds record waits till it is written
+     */
+    public LogWriter(LogQueue queue, Writer output, LogQueue.Consumer echo, int batchSize, long flushInterval) {
+        this.queue = queue;
+        this.output = output;
+        this.echo = echo;
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.batch = new StringBuilder(batchSize + batchSize / 4);
+
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                write();
+            }
+        }, "[log writer]");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    /**
+     * Adds record to queue without blocking, record is dropped if queue is full.
+     */
+    public void log(String tag, String message, Throwable cause) {
+        queue.offer(System.currentTimeMillis(), tag, message, cause);
+        if (sleeping && queue.size() >= queue.capacity() / 2) {
+            sleeping = false;
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Makes writer thread write all queued records to output without waiting for flush interval, returns at once.
+     */
+    public void flush() {
+        flushing = true;
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Writes all queued records and closes output, waits for writer thread at most given time in milliseconds.
+     */
+    public void close(long timeout) {
+        closed = true;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(timeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void record(long time, String tag, String message, Throwable cause) {
+        if (echo != null) {
+            echo.record(time, tag, message, cause);
+        }
+        if (output == null) {
+            return;
+        }
+
+        if (batch.length() == 0) {
+            batchStart = time;
+        }
+        timestamps.appendLong(batch, time);
+        batch.append(" [").append(tag).append("]: ").append(message);
+        if (cause != null) {
+            batch.append(LINE_SEPARATOR).append(cause.toString());
+
+            StringWriter trace = new StringWriter();
+            cause.printStackTrace(new PrintWriter(trace, true));
+            batch.append(trace.getBuffer());
+        }
+        batch.append(LINE_SEPARATOR);
+    }
+
+    private void write() {
+        while (true) {
+            boolean closing = closed;
+            boolean flushed = flushing;
+            flushing = false;
+            queue.drain(this, queue.capacity());
+            reportDropped();
+
+            long now = System.currentTimeMillis();
+            if (batch.length() >= batchSize || batch.length() > 0 && now - batchStart >= flushInterval || flushed
+                || closing) {
+                writeBatch();
+            }
+            if (closing) {
+                closeOutput();
+                return;
+            }
+
+            // sleep till batch should be written or till queue gets half full
+            sleeping = true;
+            if (queue.size() < queue.capacity() / 2) {
+                long wait = batch.length() > 0 ? batchStart + flushInterval - now : flushInterval;
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(Math.max(wait, 1)));
+            }
+            sleeping = false;
+        }
+    }
+
+    private void reportDropped() {
+        long dropped = queue.getDropped();
+        if (dropped > reportedDropped) {
+            String message = (dropped - reportedDropped) + " log records are dropped, queue is full.";
+            record(System.currentTimeMillis(), "log", message, null);
+            reportedDropped = dropped;
+        }
+    }
+
+    private void writeBatch() {
+        if (output == null) {
+            return;
+        }
+
+        if (chars.length < batch.length()) {
+            chars = new char[batch.capacity()];
+        }
+        batch.getChars(0, batch.length(), chars, 0);
+        try {
+            output.write(chars, 0, batch.length());
+            output.flush();
+        } catch (IOException e) {
+            if (echo != null) {
+                echo.record(System.currentTimeMillis(), "log", "Failed to write log.", e);
+            }
+        }
+        batch.setLength(0);
+    }
+
+    private void closeOutput() {
+        if (output == null) {
+            return;
+        }
+
+        try {
+            output.close();
+        } catch (IOException e) {
+            if (echo != null) {
+                echo.record(System.currentTimeMillis(), "log", "Failed to close log.", e);
+            }
+        }
+    }
+}
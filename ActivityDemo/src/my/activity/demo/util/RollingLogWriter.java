@@ -0,0 +1,399 @@
+package my.activity.demo.util;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Log output split into segment files of limited size, "prefix [dd-MM-yyyy at HH-mm-ss].txt" by time of segment
+ * start. Segment is closed on flush, when it gets larger than segment size, so it ends with complete batch of lines.
+ * Closed segments are compressed with gzip in background, and the oldest ones are deleted, when all segments take
+ * more than total size. Segments with time of their first and last write are listed in index file in the same
+ * directory, so segments of time interval can be found without reading them. Segments left uncompressed by previous
+ * process are compressed when writer is created. Log files with the same prefix, which are not in index, like files
+ * of previous log versions, are taken as the oldest segments, so they count to total size.
+ */
+public class RollingLogWriter extends Writer {
+    public static final String INDEX_FILE = "segments.index";
+
+    private static final String EXTENSION = ".txt";
+    private static final String COMPRESSED_EXTENSION = ".gz";
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+    // index is written on flush at most this often, so killed process leaves index with recent range of segment
+    private static final long INDEX_INTERVAL = 10 * 1000;
+
+    private static class Segment {
+        private String name;
+        private long start;
+        private long end;
+        private long size;
+    }
+
+    private final File directory;
+    private final String prefix;
+    private final long segmentSize;
+    private final long totalSize;
+    private final TimestampCodec timestamps = new TimestampCodec();
+    private final SimpleDateFormat nameFormat = new SimpleDateFormat("dd-MM-yyyy 'at' HH-mm-ss");
+
+    // segments from the oldest one, guarded by this
+    private final List<Segment> segments = new ArrayList<Segment>();
+    private final ExecutorService compressor;
+
+    private Segment current;
+    private Writer output;
+    private long written;
+    private volatile long indexTime;
+
+    /**
+     * @param segmentSize size in bytes, after which segment is closed
+     * @param totalSize size in bytes of all segments, after which the oldest segments are deleted
+     */
+    public RollingLogWriter(File directory, String prefix, long segmentSize, long totalSize) throws IOException {
+        this.directory = directory;
+        this.prefix = prefix;
+        this.segmentSize = segmentSize;
+        this.totalSize = totalSize;
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Failed to create log directory '" + directory + "'.");
+        }
+        compressor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "[log compressor]");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+
+        // previous segments are closed, compress them if previous process did not
+        List<Segment> indexed = readIndex(directory);
+        segments.addAll(findUnindexed(indexed));
+        for (Segment segment : indexed) {
+            File file = new File(directory, segment.name);
+            if (file.isFile()) {
+                segments.add(segment);
+                if (segment.name.endsWith(EXTENSION)) {
+                    // segment may be written after the last index write, if previous process was killed
+                    segment.size = file.length();
+                    segment.end = Math.max(segment.end, file.lastModified());
+                }
+            }
+        }
+        for (Segment segment : segments) {
+            if (segment.name.endsWith(EXTENSION)) {
+                scheduleCompression(segment);
+            }
+        }
+        deleteOldSegments();
+    }
+
+    /**
+     * @return segment files with records written in [from, to), from the oldest one
+     */
+    public static List<File> findSegments(File directory, long from, long to) throws IOException {
+        List<File> result = new ArrayList<File>();
+        for (Segment segment : readIndex(directory)) {
+            File file = new File(directory, segment.name);
+            if (segment.start < to && segment.end >= from && file.isFile()) {
+                result.add(file);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return segments for log files with prefix of this writer, which are not in index, from the oldest one
+     */
+    private List<Segment> findUnindexed(List<Segment> indexed) {
+        Set<String> names = new HashSet<String>();
+        for (Segment segment : indexed) {
+            names.add(segment.name);
+        }
+
+        List<Segment> result = new ArrayList<Segment>();
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return result;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (!file.isFile() || !name.startsWith(prefix + " [") || names.contains(name)) {
+                continue;
+            }
+            if (name.endsWith(EXTENSION + COMPRESSED_EXTENSION)) {
+                // compressed copy of indexed segment, previous process was killed before index was updated
+                if (names.contains(name.substring(0, name.length() - COMPRESSED_EXTENSION.length()))) {
+                    continue;
+                }
+            } else if (!name.endsWith(EXTENSION)) {
+                continue;
+            }
+
+            // time of the first record is not known, so segment is found for any interval before its end
+            Segment segment = new Segment();
+            segment.name = name;
+            segment.start = 0;
+            segment.end = file.lastModified();
+            segment.size = file.length();
+            result.add(segment);
+        }
+        Collections.sort(result, new Comparator<Segment>() {
+            @Override
+            public int compare(Segment segment1, Segment segment2) {
+                return segment1.end < segment2.end ? -1 : segment1.end == segment2.end ? 0 : 1;
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public void write(char[] buffer, int offset, int length) throws IOException {
+        if (output == null) {
+            openSegment();
+        }
+        output.write(buffer, offset, length);
+    }
+
+    /**
+     * Writes buffered chars to segment, segment is closed if it gets larger than segment size. Index is updated with
+     * range and size of segment at most once per index interval.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (output == null) {
+            return;
+        }
+
+        output.flush();
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            current.end = now;
+            current.size = written;
+        }
+        if (written >= segmentSize) {
+            closeSegment();
+        } else if (now - indexTime >= INDEX_INTERVAL) {
+            writeIndex();
+        }
+    }
+
+    /**
+     * Closes current segment, it is compressed in background or when writer is created next time.
+     */
+    @Override
+    public void close() throws IOException {
+        if (output != null) {
+            closeSegment();
+        }
+        compressor.shutdown();
+    }
+
+    private void openSegment() throws IOException {
+        long now = System.currentTimeMillis();
+        Segment segment = new Segment();
+        segment.start = now;
+        segment.end = now;
+
+        // segments started in the same second get numbered names
+        String name = prefix + " [" + nameFormat.format(new Date(now)) + "]";
+        File file = new File(directory, name + EXTENSION);
+        for (int number = 2; file.exists() || new File(directory, file.getName() + COMPRESSED_EXTENSION).exists();
+            number++) {
+            file = new File(directory, name + " " + number + EXTENSION);
+        }
+        segment.name = file.getName();
+        written = 0;
+        OutputStream stream = new FilterOutputStream(new FileOutputStream(file, true)) {
+            @Override
+            public void write(byte[] bytes, int offset, int length) throws IOException {
+                out.write(bytes, offset, length);
+                written += length;
+            }
+        };
+        output = new OutputStreamWriter(stream);
+        current = segment;
+        synchronized (this) {
+            segment.size = written;
+            segments.add(segment);
+            writeIndex();
+        }
+    }
+
+    private void closeSegment() throws IOException {
+        Segment segment = current;
+        try {
+            output.close();
+        } finally {
+            output = null;
+            current = null;
+            synchronized (this) {
+                segment.end = System.currentTimeMillis();
+                segment.size = written;
+                deleteOldSegments();
+            }
+            scheduleCompression(segment);
+        }
+    }
+
+    private void scheduleCompression(final Segment segment) {
+        if (compressor.isShutdown()) {
+            return;
+        }
+
+        compressor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    compress(segment);
+                } catch (IOException e) {
+                    // segment stays uncompressed and is compressed next time writer is created, error is not logged
+                    // to the log being written
+                    e.printStackTrace();
+                }
+            }
+        });
+    }
+
+    /**
+     * Compresses segment to temporary file, which replaces segment when it is complete.
+     */
+    private void compress(Segment segment) throws IOException {
+        synchronized (this) {
+            if (!segments.contains(segment)) {
+                // deleted as too old
+                return;
+            }
+        }
+
+        File file = new File(directory, segment.name);
+        File compressed = new File(directory, segment.name + COMPRESSED_EXTENSION);
+        File temporary = new File(directory, compressed.getName() + ".tmp");
+
+        InputStream input = new FileInputStream(file);
+        try {
+            OutputStream output = new GZIPOutputStream(new FileOutputStream(temporary), COPY_BUFFER_SIZE);
+            try {
+                byte[] buffer = new byte[COPY_BUFFER_SIZE];
+                int read;
+                while ((read = input.read(buffer)) >= 0) {
+                    output.write(buffer, 0, read);
+                }
+            } finally {
+                output.close();
+            }
+        } finally {
+            input.close();
+        }
+
+        if (!temporary.renameTo(compressed)) {
+            temporary.delete();
+            throw new IOException("Failed to replace '" + compressed + "'.");
+        }
+
+        synchronized (this) {
+            if (!segments.contains(segment)) {
+                compressed.delete();
+                return;
+            }
+            segment.name = compressed.getName();
+            segment.size = compressed.length();
+            deleteOldSegments();
+        }
+        file.delete();
+    }
+
+    /**
+     * Deletes the oldest closed segments, till all segments fit into total size.
+     */
+    private synchronized void deleteOldSegments() throws IOException {
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.size;
+        }
+        while (size > totalSize && !segments.isEmpty() && segments.get(0) != current) {
+            Segment oldest = segments.remove(0);
+            new File(directory, oldest.name).delete();
+            size -= oldest.size;
+        }
+        writeIndex();
+    }
+
+    /**
+     * Writes index to temporary file, which replaces index when it is complete.
+     */
+    private synchronized void writeIndex() throws IOException {
+        indexTime = System.currentTimeMillis();
+        File temporary = new File(directory, INDEX_FILE + ".tmp");
+        PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(temporary)));
+        try {
+            for (Segment segment : segments) {
+                writer.println(segment.name + "\t" + timestamps.formatLong(segment.start) + "\t"
+                    + timestamps.formatLong(segment.end) + "\t" + segment.size);
+            }
+        } finally {
+            writer.close();
+        }
+
+        File index = new File(directory, INDEX_FILE);
+        if (!temporary.renameTo(index)) {
+            // rename does not replace existing file on some file systems
+            index.delete();
+            if (!temporary.renameTo(index)) {
+                throw new IOException("Failed to replace '" + index + "'.");
+            }
+        }
+    }
+
+    private static List<Segment> readIndex(File directory) throws IOException {
+        List<Segment> result = new ArrayList<Segment>();
+        File index = new File(directory, INDEX_FILE);
+        if (!index.isFile()) {
+            return result;
+        }
+
+        TimestampCodec timestamps = new TimestampCodec();
+        BufferedReader reader = new BufferedReader(new FileReader(index));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t");
+                if (fields.length != 4) {
+                    continue;
+                }
+                Segment segment = new Segment();
+                segment.name = fields[0];
+                segment.start = timestamps.parseLong(fields[1], 0);
+                segment.end = timestamps.parseLong(fields[2], 0);
+                segment.size = Long.parseLong(fields[3]);
+                result.add(segment);
+            }
+        } finally {
+            reader.close();
+        }
+        return result;
+    }
+}
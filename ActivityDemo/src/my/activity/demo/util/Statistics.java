@@ -0,0 +1,175 @@
+package my.activity.demo.util;
+
+/**
+ * Average and sample standard deviation kernels over ranges of arrays, single and batched for many blocks or windows
+ * of the same array. Double sums are accumulated in four independent sums, so loops are not bound by latency of
+ * floating point addition and can be vectorized by JIT. Integer values are summed exactly.
+ */
+public class Statistics {
+    private Statistics() {
+    }
+
+    public static double average(double[] data) {
+        return average(data, 0, data.length);
+    }
+
+    public static double deviation(double[] data) {
+        return deviation(data, 0, data.length);
+    }
+
+    /**
+     * @return average of data[from, to), 0 for empty range
+     */
+    public static double average(double[] data, int from, int to) {
+        return to > from ? sum(data, from, to) / (to - from) : 0;
+    }
+
+    /**
+     * @return sample standard deviation of data[from, to), 0 for less than two values
+     */
+    public static double deviation(double[] data, int from, int to) {
+        return to - from < 2 ? 0 : deviation(data, from, to, average(data, from, to));
+    }
+
+    public static double average(int[] data, int from, int to) {
+        return to > from ? (double) sum(data, from, to) / (to - from) : 0;
+    }
+
+    public static double deviation(int[] data, int from, int to) {
+        return deviation(to - from, sum(data, from, to), sumOfSquares(data, from, to));
+    }
+
+    /**
+     * @return sample standard deviation of values with given count, sum and sum of squares
+     */
+    public static double deviation(long count, long sum, long sumOfSquares) {
+        if (count < 2) {
+            return 0;
+        }
+        double variance = (double) (count * sumOfSquares - sum * sum) / (count * (count - 1));
+        return variance > 0 ? Math.sqrt(variance) : 0;
+    }
+
+    /**
+     * Calculates average and deviation of each block [offsets[i], offsets[i + 1]) of data, i from 0 to count - 1.
+     */
+    public static void blocks(double[] data, int[] offsets, int count, double[] averages, double[] deviations) {
+        for (int i = 0; i < count; i++) {
+            int from = offsets[i];
+            int to = offsets[i + 1];
+            double average = average(data, from, to);
+            averages[i] = average;
+            deviations[i] = to - from < 2 ? 0 : deviation(data, from, to, average);
+        }
+    }
+
+    /**
+     * Calculates average and deviation of each block [offsets[i], offsets[i + 1]) of data, i from 0 to count - 1.
+     */
+    public static void blocks(int[] data, int[] offsets, int count, double[] averages, double[] deviations) {
+        for (int i = 0; i < count; i++) {
+            int from = offsets[i];
+            int to = offsets[i + 1];
+            long sum = sum(data, from, to);
+            averages[i] = to > from ? (double) sum / (to - from) : 0;
+            deviations[i] = deviation(to - from, sum, sumOfSquares(data, from, to));
+        }
+    }
+
+    /**
+     * Calculates average and deviation of each window data[i, i + window), i from 0 to data.length - window.
+     */
+    public static void windows(double[] data, int window, double[] averages, double[] deviations) {
+        for (int i = 0; i + window <= data.length; i++) {
+            double average = average(data, i, i + window);
+            averages[i] = average;
+            deviations[i] = window < 2 ? 0 : deviation(data, i, i + window, average);
+        }
+    }
+
+    /**
+     * Calculates average and deviation of each window data[i, i + window), i from 0 to data.length - window. Sums are
+     * exact, so they are moved along data instead of being recalculated for each window.
+     */
+    public static void windows(int[] data, int window, double[] averages, double[] deviations) {
+        if (window < 1 || window > data.length) {
+            return;
+        }
+
+        long sum = sum(data, 0, window);
+        long sumOfSquares = sumOfSquares(data, 0, window);
+        for (int i = 0; ; i++) {
+            averages[i] = (double) sum / window;
+            deviations[i] = deviation(window, sum, sumOfSquares);
+            if (i + window == data.length) {
+                return;
+            }
+
+            long added = data[i + window];
+            long removed = data[i];
+            sum += added - removed;
+            sumOfSquares += added * added - removed * removed;
+        }
+    }
+
+    private static double deviation(double[] data, int from, int to, double average) {
+        return Math.sqrt(squaredDeviationSum(data, from, to, average) / (to - from - 1));
+    }
+
+    private static double sum(double[] data, int from, int to) {
+        double sum0 = 0;
+        double sum1 = 0;
+        double sum2 = 0;
+        double sum3 = 0;
+        int i = from;
+        for (; i + 3 < to; i += 4) {
+            sum0 += data[i];
+            sum1 += data[i + 1];
+            sum2 += data[i + 2];
+            sum3 += data[i + 3];
+        }
+        for (; i < to; i++) {
+            sum0 += data[i];
+        }
+        return (sum0 + sum1) + (sum2 + sum3);
+    }
+
+    private static double squaredDeviationSum(double[] data, int from, int to, double average) {
+        double sum0 = 0;
+        double sum1 = 0;
+        double sum2 = 0;
+        double sum3 = 0;
+        int i = from;
+        for (; i + 3 < to; i += 4) {
+            double delta0 = data[i] - average;
+            double delta1 = data[i + 1] - average;
+            double delta2 = data[i + 2] - average;
+            double delta3 = data[i + 3] - average;
+            sum0 += delta0 * delta0;
+            sum1 += delta1 * delta1;
+            sum2 += delta2 * delta2;
+            sum3 += delta3 * delta3;
+        }
+        for (; i < to; i++) {
+            double delta = data[i] - average;
+            sum0 += delta * delta;
+        }
+        return (sum0 + sum1) + (sum2 + sum3);
+    }
+
+    private static long sum(int[] data, int from, int to) {
+        long sum = 0;
+        for (int i = from; i < to; i++) {
+            sum += data[i];
+        }
+        return sum;
+    }
+
+    private static long sumOfSquares(int[] data, int from, int to) {
+        long sum = 0;
+        for (int i = from; i < to; i++) {
+            sum += (long) data[i] * data[i];
+        }
+        return sum;
+    }
+}
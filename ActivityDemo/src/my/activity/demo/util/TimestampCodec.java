@@ -0,0 +1,248 @@
+package my.activity.demo.util;
+
+import java.nio.ByteBuffer;
+import java.util.TimeZone;
+
+/**
+ * Codec of log timestamps in format dd-MM-yyyy HH:mm:ss.SSS and elapsed time in format HH:mm:ss. Unlike
+ * SimpleDateFormat, it can be used by several threads at once: date prefix of the last formatted day is kept in
+ * immutable object, which is replaced when other day is formatted, all other state is local to the call.
+ * Formatting to StringBuilder and char array and parsing do not allocate objects.
+ */
+public class TimestampCodec {
+    public static final int LONG_LENGTH = 23;
+    public static final int ELAPSED_LENGTH = 8;
+
+    private static final long SECOND = 1000;
+    private static final long MINUTE = 60 * SECOND;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long DAY = 24 * HOUR;
+
+    // length of "dd-MM-yyyy " prefix
+    private static final int DAY_LENGTH = 11;
+
+    private static class Day {
+        private final long day;
+        private final char[] prefix;
+
+        private Day(long day) {
+            this.day = day;
+            this.prefix = new char[DAY_LENGTH];
+
+            // convert days since epoch to date, see http://howardhinnant.github.io/date_algorithms.html
+            long z = day + 719468;
+            long era = (z >= 0 ? z : z - 146096) / 146097;
+            long dayOfEra = z - era * 146097;
+            long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+            long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+            long monthIndex = (5 * dayOfYear + 2) / 153;
+            int dayOfMonth = (int) (dayOfYear - (153 * monthIndex + 2) / 5 + 1);
+            int month = (int) (monthIndex < 10 ? monthIndex + 3 : monthIndex - 9);
+            int year = (int) (yearOfEra + era * 400 + (month <= 2 ? 1 : 0));
+
+            put(prefix, 0, dayOfMonth, 2);
+            prefix[2] = '-';
+            put(prefix, 3, month, 2);
+            prefix[5] = '-';
+            put(prefix, 6, year, 4);
+            prefix[10] = ' ';
+        }
+    }
+
+    private final TimeZone timeZone;
+    private volatile Day lastDay;
+
+    public TimestampCodec() {
+        this(TimeZone.getDefault());
+    }
+
+    public TimestampCodec(TimeZone timeZone) {
+        this.timeZone = timeZone;
+    }
+
+    /**
+     * Formats time as dd-MM-yyyy HH:mm:ss.SSS in time zone of codec.
+     */
+    public String formatLong(long milliseconds) {
+        char[] buffer = new char[LONG_LENGTH];
+        formatLong(milliseconds, buffer, 0);
+        return new String(buffer);
+    }
+
+    public StringBuilder appendLong(StringBuilder builder, long milliseconds) {
+        long local = milliseconds + timeZone.getOffset(milliseconds);
+        builder.append(getDay(floorDiv(local, DAY)).prefix);
+        long time = local - floorDiv(local, DAY) * DAY;
+        append(builder, (int) (time / HOUR), 2).append(':');
+        append(builder, (int) (time / MINUTE % 60), 2).append(':');
+        append(builder, (int) (time / SECOND % 60), 2).append('.');
+        return append(builder, (int) (time % SECOND), 3);
+    }
+
+    /**
+     * @return position after formatted time
+     */
+    public int formatLong(long milliseconds, char[] buffer, int position) {
+        long local = milliseconds + timeZone.getOffset(milliseconds);
+        System.arraycopy(getDay(floorDiv(local, DAY)).prefix, 0, buffer, position, DAY_LENGTH);
+        long time = local - floorDiv(local, DAY) * DAY;
+        put(buffer, position + 11, (int) (time / HOUR), 2);
+        buffer[position + 13] = ':';
+        put(buffer, position + 14, (int) (time / MINUTE % 60), 2);
+        buffer[position + 16] = ':';
+        put(buffer, position + 17, (int) (time / SECOND % 60), 2);
+        buffer[position + 19] = '.';
+        put(buffer, position + 20, (int) (time % SECOND), 3);
+        return position + LONG_LENGTH;
+    }
+
+    /**
+     * Formats elapsed time as HH:mm:ss, hours are counted within a day.
+     */
+    public String formatElapsed(long milliseconds) {
+        char[] buffer = new char[ELAPSED_LENGTH];
+        formatElapsed(milliseconds, buffer, 0);
+        return new String(buffer);
+    }
+
+    public StringBuilder appendElapsed(StringBuilder builder, long milliseconds) {
+        long time = milliseconds - floorDiv(milliseconds, DAY) * DAY;
+        append(builder, (int) (time / HOUR), 2).append(':');
+        append(builder, (int) (time / MINUTE % 60), 2).append(':');
+        return append(builder, (int) (time / SECOND % 60), 2);
+    }
+
+    /**
+     * @return position after formatted time
+     */
+    public int formatElapsed(long milliseconds, char[] buffer, int position) {
+        long time = milliseconds - floorDiv(milliseconds, DAY) * DAY;
+        put(buffer, position, (int) (time / HOUR), 2);
+        buffer[position + 2] = ':';
+        put(buffer, position + 3, (int) (time / MINUTE % 60), 2);
+        buffer[position + 5] = ':';
+        put(buffer, position + 6, (int) (time / SECOND % 60), 2);
+        return position + ELAPSED_LENGTH;
+    }
+
+    /**
+     * Parses time in format dd-MM-yyyy HH:mm:ss.SSS at given position of characters.
+     *
+     * @throws IllegalArgumentException if there is no time in that format at position
+     */
+    public long parseLong(CharSequence text, int position) {
+        if (text.length() - position < LONG_LENGTH) {
+            throw new IllegalArgumentException("Unparseable date at " + position + ".");
+        }
+
+        int day = digits(text, position, 2);
+        int month = digits(text, position + 3, 2);
+        int year = digits(text, position + 6, 4);
+        int hour = digits(text, position + 11, 2);
+        int minute = digits(text, position + 14, 2);
+        int second = digits(text, position + 17, 2);
+        int millisecond = digits(text, position + 20, 3);
+        if ((day | month | year | hour | minute | second | millisecond) < 0
+            || text.charAt(position + 2) != '-' || text.charAt(position + 5) != '-'
+            || text.charAt(position + 10) != ' ' || text.charAt(position + 13) != ':'
+            || text.charAt(position + 16) != ':' || text.charAt(position + 19) != '.') {
+            throw new IllegalArgumentException("Unparseable date at " + position + ".");
+        }
+        return toMilliseconds(year, month, day, hour, minute, second, millisecond);
+    }
+
+    /**
+     * Parses time in format dd-MM-yyyy HH:mm:ss.SSS at given position of ASCII bytes.
+     *
+     * @throws IllegalArgumentException if there is no time in that format at position
+     */
+    public long parseLong(ByteBuffer buffer, int position) {
+        if (buffer.limit() - position < LONG_LENGTH) {
+            throw new IllegalArgumentException("Unparseable date at " + position + ".");
+        }
+
+        int day = digits(buffer, position, 2);
+        int month = digits(buffer, position + 3, 2);
+        int year = digits(buffer, position + 6, 4);
+        int hour = digits(buffer, position + 11, 2);
+        int minute = digits(buffer, position + 14, 2);
+        int second = digits(buffer, position + 17, 2);
+        int millisecond = digits(buffer, position + 20, 3);
+        if ((day | month | year | hour | minute | second | millisecond) < 0
+            || buffer.get(position + 2) != '-' || buffer.get(position + 5) != '-'
+            || buffer.get(position + 10) != ' ' || buffer.get(position + 13) != ':'
+            || buffer.get(position + 16) != ':' || buffer.get(position + 19) != '.') {
+            throw new IllegalArgumentException("Unparseable date at " + position + ".");
+        }
+        return toMilliseconds(year, month, day, hour, minute, second, millisecond);
+    }
+
+    private long toMilliseconds(int year, int month, int day, int hour, int minute, int second, int millisecond) {
+        // convert date to days since epoch, see http://howardhinnant.github.io/date_algorithms.html
+        int y = month <= 2 ? year - 1 : year;
+        int era = (y >= 0 ? y : y - 399) / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        long days = era * 146097L + dayOfEra - 719468;
+
+        long local = days * DAY + hour * HOUR + minute * MINUTE + second * SECOND + millisecond;
+
+        // offset of local time, the second step corrects it near daylight saving changes
+        int offset = timeZone.getOffset(local - timeZone.getRawOffset());
+        offset = timeZone.getOffset(local - offset);
+        return local - offset;
+    }
+
+    private Day getDay(long day) {
+        Day result = lastDay;
+        if (result == null || result.day != day) {
+            result = new Day(day);
+            lastDay = result;
+        }
+        return result;
+    }
+
+    private static long floorDiv(long value, long divisor) {
+        long result = value / divisor;
+        return value % divisor < 0 ? result - 1 : result;
+    }
+
+    private static void put(char[] buffer, int position, int value, int count) {
+        for (int i = position + count - 1; i >= position; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    private static StringBuilder append(StringBuilder builder, int value, int count) {
+        for (int divisor = count == 3 ? 100 : (count == 4 ? 1000 : 10); divisor > 0; divisor /= 10) {
+            builder.append((char) ('0' + value / divisor % 10));
+        }
+        return builder;
+    }
+
+    private static int digits(CharSequence text, int position, int count) {
+        int value = 0;
+        for (int i = position; i < position + count; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static int digits(ByteBuffer buffer, int position, int count) {
+        int value = 0;
+        for (int i = position; i < position + count; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+}
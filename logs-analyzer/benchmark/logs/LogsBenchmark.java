@@ -0,0 +1,323 @@
+package logs;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.text.DecimalFormat;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import my.activity.demo.util.Statistics;
+
+/**
+ * Benchmarks of log parsing and move detection over bundled day logs. Should be run from logs-analyzer directory
+ * with benchmark and src folders compiled together, see README.txt:
+ *
+ * <pre>
+ * java -cp bin logs.LogsBenchmark [baseline file] [benchmark name prefix]
+ * </pre>
+ *
+ * Each benchmark is warmed up and then measured for several iterations, score is average time of operation and
+ * allocation is count of bytes allocated by all threads per operation, as with GC profiler of JMH. When baseline file
+ * is given, score is compared with baseline score of benchmark with the same name. Output can be saved as new
+ * baseline.
+ */
+public class LogsBenchmark {
+    private abstract static class Benchmark {
+        private final String name;
+        private final String unit;
+        private final long unitsPerOperation;
+        private final long bytesPerOperation;
+
+        /**
+         * @param unit name of units processed by operation, like lines or scans, used to report throughput
+         * @param bytesPerOperation size of processed files, used to report MB/s, or 0 if operation reads no files
+         */
+        private Benchmark(String name, String unit, long unitsPerOperation, long bytesPerOperation) {
+            this.name = name;
+            this.unit = unit;
+            this.unitsPerOperation = unitsPerOperation;
+            this.bytesPerOperation = bytesPerOperation;
+        }
+
+        /**
+         * @return any value depending on operation result, so it is not eliminated
+         */
+        protected abstract long run() throws Exception;
+    }
+
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int MEASURE_ITERATIONS = 5;
+    private static final long ITERATION_TIME = 1000L * 1000 * 1000;
+
+    private static final String[] DIRECTORIES = {"logs_13-04", "logs_14-04", "logs_15-04", "logs_16-04", "logs_17-04"};
+    private static final int[] SCAN_PERIODS = {20, 40, 60, 120};
+    private static final int STATISTICS_SIZE = 60;
+    private static final int SERIES_SIZE = 10000;
+
+    private static final DecimalFormat SCORE = new DecimalFormat("0.000");
+    private static final DecimalFormat RATIO = new DecimalFormat("+0.0%;-0.0%");
+
+    // results of operations, so they are not eliminated as dead code
+    private static volatile long sink;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, Double> baseline = args.length > 0 ? readBaseline(args[0]) : new LinkedHashMap<String, Double>();
+        String filter = args.length > 1 ? args[1] : "";
+
+        System.out.println("# benchmark\tns/op\tthroughput\tMB/s\tbytes/op\tbaseline");
+        for (Benchmark benchmark : createBenchmarks()) {
+            if (benchmark.name.startsWith(filter)) {
+                measure(benchmark, baseline.get(benchmark.name));
+            }
+        }
+    }
+
+    private static List<Benchmark> createBenchmarks() throws IOException, ParseException {
+        List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+
+        // parsing of each day group, without and with cache
+        for (final String directory : DIRECTORIES) {
+            final List<File> files = LogsReader.getFiles(directory);
+            long bytes = 0;
+            long lines = 0;
+            for (File file : files) {
+                bytes += file.length();
+                lines += countLines(file);
+                LogsReader.readFile(file, true);
+            }
+
+            benchmarks.add(new Benchmark("parse:" + directory, "lines", lines, bytes) {
+                @Override
+                protected long run() throws Exception {
+                    long result = 0;
+                    for (File file : files) {
+                        ScanStore store = new ScanStore();
+                        LogParser.parse(file, store);
+                        result += store.getCellCount();
+                    }
+                    return result;
+                }
+            });
+            benchmarks.add(new Benchmark("cache-load:" + directory, "lines", lines, bytes) {
+                @Override
+                protected long run() throws Exception {
+                    long result = 0;
+                    for (File file : files) {
+                        result += ScanCache.load(file).getCellCount();
+                    }
+                    return result;
+                }
+            });
+        }
+
+        // move function over the whole week, per scan
+        final ScanStore week = LogsReader.readFiles(true, DIRECTORIES);
+        for (final int scanPeriod : SCAN_PERIODS) {
+            benchmarks.add(new Benchmark("move:" + scanPeriod, "scans", week.size(), 0) {
+                @Override
+                protected long run() {
+                    return detect(week, scanPeriod);
+                }
+            });
+        }
+
+        // move detection of device replayed over the whole week, per recorded scan
+        for (final boolean adaptive : new boolean[] {false, true}) {
+            benchmarks.add(new Benchmark("replay:" + (adaptive ? "adaptive" : "fixed"), "scans", week.size(), 0) {
+                @Override
+                protected long run() {
+                    MoveReplay.Result result = MoveReplay.replay(week, adaptive);
+                    return result.getScanCount() + result.getMovingTime();
+                }
+            });
+        }
+
+        // statistics over window of RSSI values
+        final double[] data = new double[STATISTICS_SIZE];
+        Random random = new Random(0);
+        for (int i = 0; i < data.length; i++) {
+            data[i] = 5 + random.nextInt(20);
+        }
+        benchmarks.add(new Benchmark("average:" + STATISTICS_SIZE, "values", STATISTICS_SIZE, 0) {
+            @Override
+            protected long run() {
+                return Double.doubleToLongBits(LogsReader.average(data));
+            }
+        });
+        benchmarks.add(new Benchmark("deviation:" + STATISTICS_SIZE, "values", STATISTICS_SIZE, 0) {
+            @Override
+            protected long run() {
+                return Double.doubleToLongBits(LogsReader.deviation(data));
+            }
+        });
+
+        // statistics over all windows of RSSI series
+        final double[] series = new double[SERIES_SIZE];
+        final int[] intSeries = new int[SERIES_SIZE];
+        for (int i = 0; i < series.length; i++) {
+            intSeries[i] = 5 + random.nextInt(20);
+            series[i] = intSeries[i];
+        }
+        final double[] averages = new double[SERIES_SIZE];
+        final double[] deviations = new double[SERIES_SIZE];
+        benchmarks.add(new Benchmark("windows:" + STATISTICS_SIZE, "windows", SERIES_SIZE - STATISTICS_SIZE + 1, 0) {
+            @Override
+            protected long run() {
+                Statistics.windows(series, STATISTICS_SIZE, averages, deviations);
+                return Double.doubleToLongBits(deviations[0]);
+            }
+        });
+        benchmarks.add(new Benchmark("windows-int:" + STATISTICS_SIZE, "windows", SERIES_SIZE - STATISTICS_SIZE + 1,
+            0) {
+            @Override
+            protected long run() {
+                Statistics.windows(intSeries, STATISTICS_SIZE, averages, deviations);
+                return Double.doubleToLongBits(deviations[0]);
+            }
+        });
+
+        // parsing and detection of each day group
+        for (final String directory : DIRECTORIES) {
+            long bytes = 0;
+            long lines = 0;
+            for (File file : LogsReader.getFiles(directory)) {
+                bytes += file.length();
+                lines += countLines(file);
+            }
+            benchmarks.add(new Benchmark("analysis:" + directory, "lines", lines, bytes) {
+                @Override
+                protected long run() {
+                    return detect(LogsReader.readFiles(false, directory), LogsReader.COUNT_OF_MEASURES);
+                }
+            });
+        }
+        return benchmarks;
+    }
+
+    private static long detect(ScanStore store, int scanPeriod) {
+        final long[] result = new long[1];
+        MoveDetector detector = new MoveDetector(store, scanPeriod, LogsReader.MOVE_THRESHOLD, LogsReader.IGNORE_CELLS,
+            new MoveDetector.Listener() {
+                @Override
+                public void moveCalculated(long scanTime, double moveFunction, double rssi) {
+                    result[0] += Double.doubleToLongBits(moveFunction);
+                }
+
+                @Override
+                public void periodStarted(long start) {
+                    result[0] += start;
+                }
+
+                @Override
+                public void periodEnded(long start, long end) {
+                    result[0] += end;
+                }
+            });
+        detector.update();
+        detector.finish();
+        return result[0];
+    }
+
+    private static void measure(Benchmark benchmark, Double baseline) throws Exception {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            iterate(benchmark);
+        }
+
+        long operations = 0;
+        long time = 0;
+        long allocated = 0;
+        for (int i = 0; i < MEASURE_ITERATIONS; i++) {
+            long allocatedBefore = getAllocatedBytes();
+            long[] iteration = iterate(benchmark);
+            allocated += getAllocatedBytes() - allocatedBefore;
+            operations += iteration[0];
+            time += iteration[1];
+        }
+
+        double score = (double) time / operations;
+        double throughput = benchmark.unitsPerOperation * 1e9 / score;
+        double bytesThroughput = benchmark.bytesPerOperation * 1e9 / score / (1024 * 1024);
+        System.out.println(benchmark.name + "\t" + SCORE.format(score)
+            + "\t" + SCORE.format(throughput) + " " + benchmark.unit + "/s"
+            + "\t" + (benchmark.bytesPerOperation == 0 ? "-" : SCORE.format(bytesThroughput))
+            + "\t" + allocated / operations
+            + "\t" + (baseline == null ? "-" : RATIO.format(score / baseline - 1)));
+    }
+
+    /**
+     * @return count of operations and nanoseconds spent in them
+     */
+    private static long[] iterate(Benchmark benchmark) throws Exception {
+        long operations = 0;
+        long start = System.nanoTime();
+        long now = start;
+        long result = 0;
+        while (now - start < ITERATION_TIME) {
+            result += benchmark.run();
+            operations++;
+            now = System.nanoTime();
+        }
+        sink += result;
+        return new long[] {operations, now - start};
+    }
+
+    private static long getAllocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return 0;
+        }
+
+        long result = 0;
+        long[] threads = bean.getAllThreadIds();
+        for (long allocated : ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(threads)) {
+            if (allocated > 0) {
+                result += allocated;
+            }
+        }
+        return result;
+    }
+
+    private static long countLines(File file) throws IOException {
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            long result = 0;
+            while (reader.readLine() != null) {
+                result++;
+            }
+            return result;
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static Map<String, Double> readBaseline(String fileName) throws IOException {
+        Map<String, Double> result = new LinkedHashMap<String, Double>();
+        BufferedReader reader = new BufferedReader(new FileReader(fileName));
+        try {
+            while (true) {
+                String line = reader.readLine();
+                if (line == null) {
+                    break;
+                }
+                if (line.startsWith("#") || line.trim().length() == 0) {
+                    continue;
+                }
+
+                String[] items = line.split("\t");
+                result.put(items[0], SCORE.parse(items[1]).doubleValue());
+            }
+        } catch (ParseException e) {
+            throw new IOException("Failed to parse baseline '" + fileName + "'.", e);
+        } finally {
+            reader.close();
+        }
+        return result;
+    }
+}
@@ -0,0 +1,433 @@
+package logs;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import my.activity.demo.listmanager.persistence.file.FileJournal;
+import my.activity.demo.location.MoveTracker;
+import my.activity.demo.location.ScanJournal;
+import my.activity.demo.util.Statistics;
+
+/**
+ * Checks of code shared by device and logs analyzer, which compare results with known ones or with plain versions of
+ * optimized code. Should be run from logs-analyzer directory with benchmark and src folders compiled together, see
+ * README.txt:
+ *
+ * <pre>
+ * java -cp bin logs.LogsCheck [check name prefix]
+ * </pre>
+ *
+ * Each check prints "ok" or cause of failure, exit status is 1 if any check failed.
+ */
+public class LogsCheck {
+    private abstract static class Check {
+        private final String name;
+
+        private Check(String name) {
+            this.name = name;
+        }
+
+        protected abstract void run() throws Exception;
+    }
+
+    // unrolled sums are added in other order than plain ones, so results differ by rounding only
+    private static final double TOLERANCE = 1e-12;
+    private static final int RANDOM_ARRAYS = 2000;
+
+    // recorded scans of the day and those taken by replay at fixed rate, the others are repeated scans and scans
+    // recorded before the next one is due
+    private static final String REPLAY_DIRECTORY = "logs_17-04";
+    private static final int REPLAY_RECORDED_SCANS = 3923;
+    private static final int REPLAY_TAKEN_SCANS = 2339;
+    private static final int REPLAY_PERIODS = 4;
+
+    private static final int CACHE_HEADER_SIZE = 24;
+
+    public static void main(String[] args) {
+        String filter = args.length > 0 ? args[0] : "";
+
+        int failed = 0;
+        for (Check check : createChecks()) {
+            if (!check.name.startsWith(filter)) {
+                continue;
+            }
+            try {
+                check.run();
+                System.out.println("ok\t" + check.name);
+            } catch (Throwable e) {
+                System.out.println("FAILED\t" + check.name + "\t" + e);
+                failed++;
+            }
+        }
+        System.exit(failed == 0 ? 0 : 1);
+    }
+
+    private static List<Check> createChecks() {
+        List<Check> checks = new ArrayList<Check>();
+
+        // the first value of new journal is not lost and journal is replayed as written
+        checks.add(new Check("journal:reopen") {
+            @Override
+            protected void run() throws Exception {
+                File file = File.createTempFile("check", FileJournal.EXTENSION);
+                try {
+                    file.delete();
+                    FileJournal journal = new FileJournal(file);
+                    journal.put("first", "1");
+                    journal.put("second", "2");
+                    journal.put("second", null);
+
+                    journal = new FileJournal(file);
+                    check("first", "1", journal.get("first"));
+                    check("second", null, journal.get("second"));
+
+                    journal.put("third", "3");
+                    journal = new FileJournal(file);
+                    check("first", "1", journal.get("first"));
+                    check("third", "3", journal.get("third"));
+                } finally {
+                    file.delete();
+                }
+            }
+        });
+
+        // statistics kernels agree with plain formulas on random arrays of any length, empty ones and large values
+        checks.add(new Check("statistics:double") {
+            @Override
+            protected void run() {
+                Random random = new Random(0);
+                for (int i = 0; i < RANDOM_ARRAYS; i++) {
+                    double[] data = randomDoubles(random, i);
+                    int from = data.length == 0 ? 0 : random.nextInt(data.length);
+                    check("average of " + data.length, plainAverage(data, 0, data.length), Statistics.average(data));
+                    check("deviation of " + data.length, plainDeviation(data, 0, data.length),
+                        Statistics.deviation(data));
+                    check("average from " + from, plainAverage(data, from, data.length),
+                        Statistics.average(data, from, data.length));
+                    check("deviation from " + from, plainDeviation(data, from, data.length),
+                        Statistics.deviation(data, from, data.length));
+                }
+            }
+        });
+        checks.add(new Check("statistics:int") {
+            @Override
+            protected void run() {
+                Random random = new Random(1);
+                for (int i = 0; i < RANDOM_ARRAYS; i++) {
+                    int[] data = randomInts(random, i);
+                    double[] values = toDoubles(data);
+                    check("average of " + data.length, plainAverage(values, 0, data.length),
+                        Statistics.average(data, 0, data.length));
+                    check("deviation of " + data.length, plainDeviation(values, 0, data.length),
+                        Statistics.deviation(data, 0, data.length));
+                }
+            }
+        });
+        checks.add(new Check("statistics:blocks") {
+            @Override
+            protected void run() {
+                Random random = new Random(2);
+                for (int i = 0; i < RANDOM_ARRAYS / 10; i++) {
+                    int[] data = randomInts(random, i);
+                    double[] values = toDoubles(data);
+
+                    // blocks of random lengths including empty ones
+                    int[] offsets = new int[data.length + 2];
+                    int count = 0;
+                    while (offsets[count] < data.length) {
+                        offsets[count + 1] = Math.min(data.length, offsets[count] + random.nextInt(9));
+                        count++;
+                    }
+                    double[] averages = new double[count];
+                    double[] deviations = new double[count];
+                    double[] intAverages = new double[count];
+                    double[] intDeviations = new double[count];
+                    Statistics.blocks(values, offsets, count, averages, deviations);
+                    Statistics.blocks(data, offsets, count, intAverages, intDeviations);
+                    for (int block = 0; block < count; block++) {
+                        double average = plainAverage(values, offsets[block], offsets[block + 1]);
+                        double deviation = plainDeviation(values, offsets[block], offsets[block + 1]);
+                        check("average of block " + block, average, averages[block]);
+                        check("deviation of block " + block, deviation, deviations[block]);
+                        check("average of int block " + block, average, intAverages[block]);
+                        check("deviation of int block " + block, deviation, intDeviations[block]);
+                    }
+                }
+            }
+        });
+        checks.add(new Check("statistics:windows") {
+            @Override
+            protected void run() {
+                Random random = new Random(3);
+                for (int i = 0; i < RANDOM_ARRAYS / 10; i++) {
+                    int[] data = randomInts(random, i);
+                    double[] values = toDoubles(data);
+                    int window = 1 + random.nextInt(Math.max(data.length, 1));
+                    int count = Math.max(data.length - window + 1, 0);
+                    double[] averages = new double[count];
+                    double[] deviations = new double[count];
+                    double[] intAverages = new double[count];
+                    double[] intDeviations = new double[count];
+                    Statistics.windows(values, window, averages, deviations);
+                    Statistics.windows(data, window, intAverages, intDeviations);
+                    for (int start = 0; start < count; start++) {
+                        double average = plainAverage(values, start, start + window);
+                        double deviation = plainDeviation(values, start, start + window);
+                        check("average of window " + start, average, averages[start]);
+                        check("deviation of window " + start, deviation, deviations[start]);
+                        check("average of int window " + start, average, intAverages[start]);
+                        check("deviation of int window " + start, deviation, intDeviations[start]);
+                    }
+                }
+            }
+        });
+
+        // device move detection replayed at fixed rate finds the same periods as batch detector over taken scans
+        checks.add(new Check("replay:" + REPLAY_DIRECTORY) {
+            @Override
+            protected void run() {
+                ScanStore scans = LogsReader.readFiles(false, REPLAY_DIRECTORY);
+                final ScanStore taken = new ScanStore();
+                MoveReplay.Result result = MoveReplay.replay(scans, false, taken);
+                check("recorded scans", REPLAY_RECORDED_SCANS, scans.size());
+                check("taken scans", REPLAY_TAKEN_SCANS, result.getScanCount());
+                check("periods", REPLAY_PERIODS, result.getPeriodCount());
+
+                final List<long[]> periods = new ArrayList<long[]>();
+                MoveDetector detector = new MoveDetector(taken, MoveTracker.SCAN_HISTORY_SIZE,
+                    MoveTracker.MOVE_FUNCTION_THRESHOLD, MoveTracker.SCAN_CELL_COUNT_IGNORE,
+                    new MoveDetector.Listener() {
+                        @Override
+                        public void moveCalculated(long scanTime, double moveFunction, double rssi) {
+                            // only periods are compared
+                        }
+
+                        @Override
+                        public void periodStarted(long start) {
+                            // wait for period end
+                        }
+
+                        @Override
+                        public void periodEnded(long start, long end) {
+                            periods.add(new long[] {start, end});
+                        }
+                    });
+                detector.update();
+                detector.finish();
+
+                // both calculate move function of scan over the same window of preceding scans, detector bounds
+                // period by the first scans of windows, tracker by the second scan of the first window and the last
+                // moving scan
+                check("detector periods", result.getPeriodCount(), periods.size());
+                for (int i = 0; i < periods.size(); i++) {
+                    int start = taken.findScan(periods.get(i)[0]);
+                    int end = taken.findScan(periods.get(i)[1]);
+                    check("start of period " + i, taken.getScanTime(start + 1), result.getStart(i));
+                    check("end of period " + i, taken.getScanTime(end + MoveTracker.SCAN_HISTORY_SIZE),
+                        result.getEnd(i));
+                }
+            }
+        });
+
+        // truncated or corrupt cache is not used, so log file is parsed again
+        checks.add(new Check("cache:corrupt") {
+            @Override
+            protected void run() throws Exception {
+                File directory = File.createTempFile("check", "");
+                directory.delete();
+                File file = new File(directory, "log.txt");
+                File cacheFile = new File(new File(directory, ScanCache.DIRECTORY), file.getName() + ".scans");
+                try {
+                    directory.mkdir();
+                    file.createNewFile();
+                    ScanStore store = new ScanStore();
+                    for (int scan = 0; scan < 3; scan++) {
+                        store.scanStarted(1000L * scan);
+                        for (int cell = 0; cell < scan + 1; cell++) {
+                            store.cellScanned(cell, 1, -cell);
+                        }
+                    }
+                    ScanCache.save(file, store);
+                    check("cached cells", store.getCellCount(), ScanCache.load(file).getCellCount());
+
+                    long length = cacheFile.length();
+                    RandomAccessFile cache = new RandomAccessFile(cacheFile, "rw");
+                    try {
+                        // scan count is the first value after header
+                        cache.seek(CACHE_HEADER_SIZE);
+                        cache.writeInt(Integer.MAX_VALUE);
+                        check("cache with wrong count", null, ScanCache.load(file));
+                        for (long truncated = length - 1; truncated >= 0; truncated--) {
+                            cache.setLength(truncated);
+                            check("cache of " + truncated + " bytes", null, ScanCache.load(file));
+                        }
+                    } finally {
+                        cache.close();
+                    }
+                } finally {
+                    cacheFile.delete();
+                    cacheFile.getParentFile().delete();
+                    file.delete();
+                    directory.delete();
+                }
+            }
+        });
+
+        // followed directory gets index and log segment written between scans of journal, each scan is passed once
+        checks.add(new Check("tail:directory") {
+            @Override
+            protected void run() throws Exception {
+                File directory = File.createTempFile("check", "");
+                directory.delete();
+                directory.mkdir();
+                File journalFile = new File(directory, "SCAN [check]" + ScanJournal.EXTENSION);
+                File indexFile = new File(directory, "segments.index");
+                File logFile = new File(directory, "LOG [check].txt");
+                final List<Long> scanTimes = new ArrayList<Long>();
+                LogTailer tailer = new LogTailer(directory, new LogParser.ScanHandler() {
+                    @Override
+                    public void scanStarted(long scanTime) {
+                        scanTimes.add(scanTime);
+                    }
+
+                    @Override
+                    public void cellScanned(int cellId, int lac, int rssi) {
+                        // only scans are counted
+                    }
+                });
+                ScanJournal journal = new ScanJournal(journalFile, 4096, 1, 0);
+                try {
+                    // modification times are set, so order of files does not depend on file system resolution
+                    long modified = journalFile.lastModified() - 60 * 1000;
+                    for (int scan = 0; scan < 3; scan++) {
+                        journal.scanStarted(1000L * scan);
+                        journal.cellScanned(1, 1, -50);
+                        journal.scanFinished();
+                    }
+                    journalFile.setLastModified(modified);
+                    tailer.poll();
+
+                    write(indexFile, "index\n", modified + 10 * 1000);
+                    tailer.poll();
+                    write(logFile, "log\n", modified + 20 * 1000);
+                    tailer.poll();
+
+                    journal.scanStarted(3000);
+                    journal.cellScanned(1, 1, -50);
+                    journal.scanFinished();
+                    journalFile.setLastModified(modified + 30 * 1000);
+                    tailer.poll();
+                    tailer.poll();
+                    check("scan times", "[0, 1000, 2000, 3000]", scanTimes.toString());
+                } finally {
+                    journal.close();
+                    journalFile.delete();
+                    indexFile.delete();
+                    logFile.delete();
+                    directory.delete();
+                }
+            }
+        });
+        return checks;
+    }
+
+    /**
+     * @return array of length from 0 to 13 cycling with index, so lengths not divisible by 4 and empty arrays are
+     *         included, with RSSI like values, values around 1e15 or values of any sign and magnitude
+     */
+    private static double[] randomDoubles(Random random, int index) {
+        double[] data = new double[index % 14];
+        for (int i = 0; i < data.length; i++) {
+            switch (index % 3) {
+            case 0:
+                data[i] = random.nextInt(32);
+                break;
+            case 1:
+                data[i] = 1e15 + random.nextInt(1000) * 1e12;
+                break;
+            default:
+                data[i] = random.nextGaussian() * Math.pow(10, random.nextInt(40) - 20);
+                break;
+            }
+        }
+        return data;
+    }
+
+    /**
+     * @return array of length from 0 to 69 with RSSI like values or large values, whose squares are still summed
+     *         exactly in long
+     */
+    private static int[] randomInts(Random random, int index) {
+        int[] data = new int[index % 70];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = index % 2 == 0 ? random.nextInt(32) : random.nextInt(2000000) - 1000000;
+        }
+        return data;
+    }
+
+    private static double[] toDoubles(int[] data) {
+        double[] result = new double[data.length];
+        for (int i = 0; i < data.length; i++) {
+            result[i] = data[i];
+        }
+        return result;
+    }
+
+    private static double plainAverage(double[] data, int from, int to) {
+        if (to <= from) {
+            return 0;
+        }
+
+        double sum = 0;
+        for (int i = from; i < to; i++) {
+            sum += data[i];
+        }
+        return sum / (to - from);
+    }
+
+    private static double plainDeviation(double[] data, int from, int to) {
+        if (to - from < 2) {
+            return 0;
+        }
+
+        double average = plainAverage(data, from, to);
+        double sum = 0;
+        for (int i = from; i < to; i++) {
+            sum += (data[i] - average) * (data[i] - average);
+        }
+        return Math.sqrt(sum / (to - from - 1));
+    }
+
+    private static void write(File file, String text, long modified) throws IOException {
+        FileWriter writer = new FileWriter(file);
+        try {
+            writer.write(text);
+        } finally {
+            writer.close();
+        }
+        file.setLastModified(modified);
+    }
+
+    private static void check(String name, long expected, long actual) {
+        if (expected != actual) {
+            throw new AssertionError(name + " is " + actual + " instead of " + expected);
+        }
+    }
+
+    private static void check(String name, double expected, double actual) {
+        if (Math.abs(expected - actual) > TOLERANCE * Math.abs(expected)) {
+            throw new AssertionError(name + " is " + actual + " instead of " + expected);
+        }
+    }
+
+    private static void check(String name, Object expected, Object actual) {
+        if (expected == null ? actual != null : !expected.equals(actual)) {
+            throw new AssertionError(name + " is " + actual + " instead of " + expected);
+        }
+    }
+}
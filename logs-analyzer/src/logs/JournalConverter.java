@@ -0,0 +1,124 @@
+package logs;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.List;
+
+import my.activity.demo.location.ScanConsumer;
+import my.activity.demo.location.ScanJournal;
+import my.activity.demo.util.TimestampCodec;
+
+/**
+ * Converts binary scan journals to text logs in the format written by device before journals, so they can be read
+ * by older tools. Lines of a scan get the scan time as their time.
+ */
+public class JournalConverter {
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+    private static final String LINE_END = "\n";
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: JournalConverter <output directory> <journal files or directories>");
+            return;
+        }
+
+        File directory = new File(args[0]);
+        directory.mkdirs();
+        String[] sources = new String[args.length - 1];
+        System.arraycopy(args, 1, sources, 0, sources.length);
+        List<File> files = LogsReader.getFiles(sources);
+        for (File file : files) {
+            if (!ScanJournal.isJournal(file)) {
+                continue;
+            }
+
+            String name = file.getName();
+            File output = new File(directory, name.substring(0, name.length() - ScanJournal.EXTENSION.length())
+                + ".txt");
+            int scans = convert(file, output);
+            System.out.println(file + " -> " + output + ": " + scans + " scans");
+        }
+    }
+
+    /**
+     * @return count of converted scans
+     */
+    public static int convert(File journal, File output) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(output), ASCII));
+        try {
+            TextWriter text = new TextWriter(writer);
+            ScanJournal.read(journal, text);
+            return text.finish();
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Writes lines of scans, the first write error is kept and thrown on finish.
+     */
+    private static class TextWriter implements ScanConsumer {
+        private final TimestampCodec timestamps = new TimestampCodec();
+        private final StringBuilder line = new StringBuilder();
+        private final Writer writer;
+        private IOException error;
+        private int scanCount;
+        private long scanTime;
+
+        private TextWriter(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void scanStarted(long time) {
+            finishScan();
+            scanCount++;
+            scanTime = time;
+            write(timestamps.appendLong(startLine().append("---Scan start at "), time));
+        }
+
+        @Override
+        public void cellScanned(int cellId, int lac, int rssi) {
+            write(startLine().append("Cell ID: ").append(cellId).append(", LAC: ").append(lac).append(", RSSI: ")
+                .append(rssi));
+        }
+
+        /**
+         * @return count of written scans
+         */
+        private int finish() throws IOException {
+            finishScan();
+            if (error != null) {
+                throw error;
+            }
+            return scanCount;
+        }
+
+        private void finishScan() {
+            if (scanCount > 0) {
+                write(startLine().append("---Processed data size: ").append(scanCount));
+            }
+        }
+
+        private StringBuilder startLine() {
+            line.setLength(0);
+            return timestamps.appendLong(line, scanTime).append(" [cell]: ");
+        }
+
+        private void write(StringBuilder text) {
+            if (error != null) {
+                return;
+            }
+            try {
+                writer.append(text).append(LINE_END);
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+    }
+}
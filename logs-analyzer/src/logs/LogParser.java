@@ -0,0 +1,280 @@
+package logs;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+import my.activity.demo.location.ScanConsumer;
+import my.activity.demo.location.ScanJournal;
+import my.activity.demo.util.TimestampCodec;
+
+/**
+ * Parser of cell scan logs, written by device with lines in format:
+ *
+ * <pre>
+ * dd-MM-yyyy HH:mm:ss.SSS [cell]: ---Scan start at dd-MM-yyyy HH:mm:ss.SSS
+ * dd-MM-yyyy HH:mm:ss.SSS [cell]: Cell ID: 8481, LAC: 10169, RSSI: 14
+ * dd-MM-yyyy HH:mm:ss.SSS [cell]: ---Processed data, size 1
+ * </pre>
+ *
+ * Log file is memory mapped and numbers and scan times are decoded right from bytes, no objects are created per line.
+ * Gzip compressed log files ('.gz') are decompressed by chunks into reused buffer, which is parsed the same way.
+ * Binary scan journals ('.journal') are read by {@link ScanJournal}.
+ * Instance keeps state of current scan, so one instance should be used per file and it is not thread safe.
+ */
+public class LogParser {
+    public interface ScanHandler extends ScanConsumer {
+    }
+
+    // length of "dd-MM-yyyy HH:mm:ss.SSS [cell]: " line prefix
+    private static final int LINE_PREFIX = 32;
+
+    private static final byte[] SCAN = ascii("---Scan");
+    private static final byte[] SCAN_START = ascii("---Scan start at ");
+    private static final byte[] PROCESSED = ascii("---Processed");
+    private static final byte[] CELL_ID = ascii("Cell ID: ");
+    private static final byte[] LAC = ascii(", LAC: ");
+    private static final byte[] RSSI = ascii(", RSSI: ");
+
+    private static final String TEXT_EXTENSION = ".txt";
+    private static final String COMPRESSED_EXTENSION = ".gz";
+    private static final int COMPRESSED_BUFFER_SIZE = 256 * 1024;
+
+    private static final TimestampCodec TIMESTAMPS = new TimestampCodec();
+
+    private final ScanHandler handler;
+    private boolean inScan;
+
+    // start of the line being parsed
+    private int lineStart;
+    private int lineCount;
+
+    // position of the number end, set by parseNumber
+    private int numberEnd;
+
+    public LogParser(ScanHandler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * @return true if file is text log, compressed text log or scan journal, not index or temporary file of device
+     *         log directory
+     */
+    public static boolean isLog(File file) {
+        String name = file.getName();
+        return name.endsWith(TEXT_EXTENSION) || isCompressed(file) || ScanJournal.isJournal(file);
+    }
+
+    public static boolean isCompressed(File file) {
+        return file.getName().endsWith(COMPRESSED_EXTENSION);
+    }
+
+    /**
+     * @return true if file is not a text log, which can be mapped and parsed by ranges
+     */
+    public static boolean isStream(File file) {
+        return isCompressed(file) || ScanJournal.isJournal(file);
+    }
+
+    /**
+     * @return count of parsed lines, for journal count of scans and cells
+     */
+    public static int parse(File file, ScanHandler handler) throws IOException, ParseException {
+        if (ScanJournal.isJournal(file)) {
+            return ScanJournal.read(file, handler);
+        }
+        if (isCompressed(file)) {
+            return parseCompressed(file, handler);
+        }
+
+        RandomAccessFile input = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = input.getChannel();
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File '" + file + "' is too large to be mapped.");
+            }
+
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            LogParser parser = new LogParser(handler);
+            parser.parse(buffer, 0, (int) size, true);
+            return parser.getLineCount();
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Decompresses file into buffer and parses complete lines of it, incomplete line is moved to the buffer start and
+     * completed by the next chunk.
+     */
+    private static int parseCompressed(File file, ScanHandler handler) throws IOException, ParseException {
+        InputStream input = new GZIPInputStream(new FileInputStream(file), COMPRESSED_BUFFER_SIZE);
+        try {
+            LogParser parser = new LogParser(handler);
+            byte[] bytes = new byte[COMPRESSED_BUFFER_SIZE];
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            int size = 0;
+            while (true) {
+                // line longer than buffer
+                if (size == bytes.length) {
+                    bytes = Arrays.copyOf(bytes, bytes.length * 2);
+                    buffer = ByteBuffer.wrap(bytes);
+                }
+
+                int read = 0;
+                while (size < bytes.length && (read = input.read(bytes, size, bytes.length - size)) >= 0) {
+                    size += read;
+                }
+                if (read < 0) {
+                    parser.parse(buffer, 0, size, true);
+                    return parser.getLineCount();
+                }
+
+                int parsed = parser.parse(buffer, 0, size, false);
+                System.arraycopy(bytes, parsed, bytes, 0, size - parsed);
+                size -= parsed;
+            }
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * @return count of lines parsed by this parser
+     */
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * @return position of the line being parsed, valid while handler is called
+     */
+    public int getLineStart() {
+        return lineStart;
+    }
+
+    /**
+     * Parses lines of the buffer between given positions.
+     *
+     * @param last if true, then line at the end without line separator is parsed as well
+     * @return position after the last parsed line
+     */
+    public int parse(ByteBuffer buffer, int from, int to, boolean last) throws ParseException {
+        int lineStart = from;
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == '\n') {
+                parseLine(buffer, lineStart, i);
+                lineStart = i + 1;
+            }
+        }
+
+        if (last && lineStart < to) {
+            parseLine(buffer, lineStart, to);
+            lineStart = to;
+        }
+        return lineStart;
+    }
+
+    private void parseLine(ByteBuffer buffer, int start, int end) throws ParseException {
+        lineStart = start;
+        lineCount++;
+        if (end > start && buffer.get(end - 1) == '\r') {
+            end--;
+        }
+
+        // skip date-time of log line
+        int position = start + LINE_PREFIX;
+        if (position >= end) {
+            return;
+        }
+
+        if (startsWith(buffer, position, end, SCAN)) {
+            if (!startsWith(buffer, position, end, SCAN_START)
+                || end - position - SCAN_START.length < TimestampCodec.LONG_LENGTH) {
+                throw new ParseException("Unparseable scan start line.", start);
+            }
+
+            long scanTime;
+            try {
+                scanTime = TIMESTAMPS.parseLong(buffer, position + SCAN_START.length);
+            } catch (IllegalArgumentException e) {
+                throw new ParseException("Unparseable date.", position + SCAN_START.length);
+            }
+            inScan = true;
+            handler.scanStarted(scanTime);
+        } else if (startsWith(buffer, position, end, PROCESSED)) {
+            inScan = false;
+        } else if (inScan) {
+            parseCell(buffer, position, end);
+        }
+    }
+
+    private void parseCell(ByteBuffer buffer, int position, int end) {
+        if (!startsWith(buffer, position, end, CELL_ID)) {
+            return;
+        }
+        long cellId = parseNumber(buffer, position + CELL_ID.length, end);
+        if (cellId < 0 || !startsWith(buffer, numberEnd, end, LAC)) {
+            return;
+        }
+        long lac = parseNumber(buffer, numberEnd + LAC.length, end);
+        if (lac < 0 || !startsWith(buffer, numberEnd, end, RSSI)) {
+            return;
+        }
+        long rssi = parseNumber(buffer, numberEnd + RSSI.length, end);
+        if (rssi < 0 || numberEnd != end) {
+            return;
+        }
+
+        handler.cellScanned((int) cellId, (int) lac, (int) rssi);
+    }
+
+    /**
+     * @return parsed non negative number or -1 if there is no number at position or it does not fit into int
+     */
+    private long parseNumber(ByteBuffer buffer, int position, int end) {
+        long value = 0;
+        int i = position;
+        while (i < end) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                break;
+            }
+            value = value * 10 + digit;
+            if (value > Integer.MAX_VALUE) {
+                return -1;
+            }
+            i++;
+        }
+        numberEnd = i;
+        return i == position ? -1 : value;
+    }
+
+    private static boolean startsWith(ByteBuffer buffer, int position, int end, byte[] prefix) {
+        if (end - position < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer.get(position + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] ascii(String value) {
+        byte[] result = new byte[value.length()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = (byte) value.charAt(i);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,219 @@
+package logs;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.text.ParseException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import my.activity.demo.location.ScanJournal;
+
+/**
+ * Follows growing log file and parses lines appended to it since previous poll. Position after the last complete
+ * line is kept, so incomplete line at the end of file is parsed once it is written completely. Scan journals are
+ * followed the same way by complete records.
+ * <p>
+ * If directory is followed, then only text logs and scan journals in it are read, the most recently modified one
+ * first. Device writes journal and log segments at the same time, so tailer moves to a file modified after the
+ * current one, and position and parser are kept for each read file, so file is continued where it was left and never
+ * parsed again. Scans are passed to handler in time order, scan older than the last passed one is skipped.
+ */
+public class LogTailer {
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_READ_SIZE = 1024 * 1024;
+
+    private static class Position {
+        private LogParser parser;
+        private long offset;
+    }
+
+    private final File source;
+    private final LogParser.ScanHandler handler;
+    private ByteBuffer buffer = allocate(INITIAL_BUFFER_SIZE);
+
+    private final Map<File, Position> positions = new HashMap<File, Position>();
+    private File currentFile;
+    private Position current;
+
+    // time of the last scan passed to handler and whether cells of the scan being parsed are skipped
+    private long lastScanTime = Long.MIN_VALUE;
+    private boolean skipping;
+
+    public LogTailer(File source, final LogParser.ScanHandler handler) {
+        this.source = source;
+        this.handler = new LogParser.ScanHandler() {
+            @Override
+            public void scanStarted(long scanTime) {
+                skipping = scanTime < lastScanTime;
+                if (!skipping) {
+                    lastScanTime = scanTime;
+                    handler.scanStarted(scanTime);
+                }
+            }
+
+            @Override
+            public void cellScanned(int cellId, int lac, int rssi) {
+                if (!skipping) {
+                    handler.cellScanned(cellId, lac, rssi);
+                }
+            }
+        };
+    }
+
+    public File getCurrentFile() {
+        return currentFile;
+    }
+
+    public long getOffset() {
+        return current == null ? 0 : current.offset;
+    }
+
+    /**
+     * Parses lines appended since previous poll.
+     *
+     * @return true if any new line was parsed
+     */
+    public boolean poll() throws IOException, ParseException {
+        if (currentFile == null) {
+            File file = findFile();
+            if (file == null) {
+                return false;
+            }
+            open(file);
+        }
+
+        boolean result = readAppended();
+
+        // switch to file written after the current one, current file is continued when it is written again
+        if (source.isDirectory()) {
+            File file = findFile();
+            if (file != null && !file.equals(currentFile)) {
+                open(file);
+                result |= readAppended();
+            }
+        }
+        return result;
+    }
+
+    private void open(File file) {
+        currentFile = file;
+        current = positions.get(file);
+        if (current == null) {
+            current = new Position();
+            current.parser = new LogParser(handler);
+            positions.put(file, current);
+        }
+    }
+
+    private boolean readAppended() throws IOException, ParseException {
+        if (!currentFile.isFile()) {
+            return false;
+        }
+
+        RandomAccessFile input = new RandomAccessFile(currentFile, "r");
+        try {
+            FileChannel channel = input.getChannel();
+            if (channel.size() < current.offset) {
+                // file is truncated or replaced, start from the beginning
+                current.parser = new LogParser(handler);
+                current.offset = 0;
+            }
+
+            boolean result = false;
+            while (current.offset < channel.size()) {
+                long offset = current.offset;
+                int length = (int) Math.min(channel.size() - offset, Math.max(MAX_READ_SIZE, buffer.capacity()));
+                if (buffer.capacity() < length) {
+                    buffer = allocate(length);
+                }
+                buffer.clear();
+                buffer.limit(length);
+                while (buffer.hasRemaining() && channel.read(buffer, offset + buffer.position()) >= 0) {
+                    // read till limit
+                }
+
+                int parsed = parse();
+                if (parsed == 0) {
+                    if (buffer.position() < buffer.capacity()) {
+                        // only incomplete line is available
+                        break;
+                    }
+                    // line is longer than buffer
+                    buffer = allocate(buffer.capacity() * 2);
+                    continue;
+                }
+                current.offset += parsed;
+                result = true;
+            }
+            return result;
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * @return count of parsed bytes at the buffer start
+     */
+    private int parse() throws IOException, ParseException {
+        if (!ScanJournal.isJournal(currentFile)) {
+            return current.parser.parse(buffer, 0, buffer.position(), false);
+        }
+
+        if (current.offset > 0) {
+            return ScanJournal.parse(buffer, 0, buffer.position(), handler, null);
+        }
+        if (buffer.position() < ScanJournal.HEADER_SIZE) {
+            return 0;
+        }
+        if (!ScanJournal.isHeader(buffer, 0)) {
+            throw new IOException("File '" + currentFile + "' is not a scan journal.");
+        }
+        return ScanJournal.parse(buffer, ScanJournal.HEADER_SIZE, buffer.position(), handler, null);
+    }
+
+    /**
+     * @return followed file, for directory text log or scan journal modified the last and after the current file, or
+     *         null if there is none
+     */
+    private File findFile() {
+        if (!source.isDirectory()) {
+            return source;
+        }
+
+        // positions of deleted files are dropped
+        for (Iterator<File> iterator = positions.keySet().iterator(); iterator.hasNext();) {
+            File file = iterator.next();
+            if (!file.equals(currentFile) && !file.isFile()) {
+                iterator.remove();
+            }
+        }
+
+        File result = null;
+        long modified = currentFile == null ? Long.MIN_VALUE : currentFile.lastModified();
+        File[] files = source.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                // compressed segments are copies of text segments, which are read while they are written
+                if (!file.isFile() || !LogParser.isLog(file) || LogParser.isCompressed(file)) {
+                    continue;
+                }
+                if (file.lastModified() > modified && (result == null || file.lastModified() > result.lastModified())) {
+                    result = file;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static ByteBuffer allocate(int capacity) {
+        // journals are little endian, text is parsed by bytes
+        ByteBuffer result = ByteBuffer.allocate(capacity);
+        result.order(ByteOrder.LITTLE_ENDIAN);
+        return result;
+    }
+}
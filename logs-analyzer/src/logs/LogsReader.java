@@ -1,294 +1,494 @@
 package logs;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.File;
 import java.io.IOException;
-import java.text.DateFormat;
 import java.text.DecimalFormat;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Date;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
-import java.util.TimeZone;
-import java.util.TreeMap;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
-public class LogsReader {
-    public static class CellData {
-        private final int cellId;
-        private final int lac;
-        private final int rssi;
-
-        private CellData(int cellId, int lac, int rssi) {
-            this.cellId = cellId;
-            this.lac = lac;
-            this.rssi = rssi;
-        }
-    }
-
-    public static class CellCalculatedInfo {
-        private final List<Integer> rssis = new ArrayList<Integer>();
-        private final int cellId;
+import my.activity.demo.location.MoveTracker;
+import my.activity.demo.location.ScanRing;
+import my.activity.demo.util.Statistics;
+import my.activity.demo.util.TimestampCodec;
 
-        private CellCalculatedInfo(int cellId) {
-            this.cellId = cellId;
+public class LogsReader {
+    /**
+     * Reads range of log files in parallel, each half of range is read by separate task and results are merged.
+     */
+    private static class ReadTask extends RecursiveTask<ScanStore> {
+        private static final long serialVersionUID = -5407357745327431386L;
+
+        private final List<File> files;
+        private final int from;
+        private final int to;
+        private final boolean useCache;
+
+        private ReadTask(List<File> files, int from, int to, boolean useCache) {
+            this.files = files;
+            this.from = from;
+            this.to = to;
+            this.useCache = useCache;
         }
 
-        private double[] getRssis() {
-            double[] result = new double[rssis.size()];
-            for (int i = 0; i < result.length; i++) {
-                result[i] = rssis.get(i) == 99 ? 0 : rssis.get(i);
+        @Override
+        protected ScanStore compute() {
+            if (to - from == 1) {
+                File file = files.get(from);
+                try {
+                    return readFile(file, useCache);
+                } catch (IOException e) {
+                    throw new IllegalStateException("Failed to read '" + file + "'.", e);
+                } catch (ParseException e) {
+                    throw new IllegalStateException("Failed to parse '" + file + "' at " + e.getErrorOffset() + ".", e);
+                }
             }
-            return result;
-        }
 
-        private int getCount() {
-            return rssis.size();
-        }
+            int middle = (from + to) >>> 1;
+            ReadTask first = new ReadTask(files, from, middle, useCache);
+            first.fork();
+            ScanStore second = new ReadTask(files, middle, to, useCache).compute();
+            ScanStore firstStore = first.join();
 
-        private void addRssi(int rssi) {
-            rssis.add(rssi);
+            long start = System.nanoTime();
+            ScanStore result = ScanStore.merge(firstStore, second);
+            metrics.phaseTimed("merge", System.nanoTime() - start);
+            return result;
         }
+    }
 
+    private static class Period {
+        private long start;
+        private long end;
     }
 
-    public static class ScanData {
-        private final String caption;
-        private final List<CellData> cellData = new ArrayList<CellData>();
-        private final Date scanTime;
-        private double moveFunction;
+    public static final TimestampCodec TIMESTAMPS = new TimestampCodec();
 
-        private ScanData(String caption) throws ParseException {
-            this.caption = caption;
+    public static final ScanStore DATA = new ScanStore();
+    public static final ForkJoinPool POOL = new ForkJoinPool();
+    public static final DecimalFormat DECIMAL = new DecimalFormat("0.00");
+    public static final int COUNT_OF_MEASURES = MoveTracker.SCAN_HISTORY_SIZE;
+    public static final int IGNORE_CELLS = MoveTracker.SCAN_CELL_COUNT_IGNORE;
+    public static final int MOVE_THRESHOLD = (int) MoveTracker.MOVE_FUNCTION_THRESHOLD;
+    public static final long FOLLOW_INTERVAL = 1000;
+    public static final int FOLLOW_CELL_COUNT = 32;
+    public static final long PLACE_MIN_DURATION = 10 * 60 * 1000;
+    public static final double PLACE_SIMILARITY = 0.5;
+    public static final int PLACE_MATCHES = 3;
+    public static final long DAY = 24 * 60 * 60 * 1000;
 
-            // calculate scan time
-            scanTime = DATE_LONG.parse(caption.substring(17));
-        }
+    public static final boolean REMOVE_EMPTY_SCANS = false;
+    public static final boolean DUMP_MOVE_FUNCTION = true;
+    public static final boolean USE_SCAN_CACHE = true;
 
-        private void addData(int cellId, int lac, int rssi) {
-            cellData.add(new CellData(cellId, lac, rssi));
-        }
+    private static Metrics metrics = Metrics.NONE;
 
-        private void addData(String cellId, String lac, String rssi) {
-            addData(Integer.parseInt(cellId), Integer.parseInt(lac), Integer.parseInt(rssi));
+    public static void main(String[] args) throws Exception {
+        // print summary of reading and analysis at the end
+        if (args.length >= 1 && "--metrics".equals(args[0])) {
+            MetricsSummary summary = new MetricsSummary(TIMESTAMPS);
+            metrics = summary;
+            long start = System.nanoTime();
+            analyze(Arrays.copyOfRange(args, 1, args.length));
+            summary.phaseTimed("total", System.nanoTime() - start);
+            summary.print(System.out);
+            return;
         }
-    }
 
-    private static class Period {
-        private Date start;
-        private Date end;
+        analyze(args);
     }
 
-    public static final DateFormat DATE_LONG = new SimpleDateFormat("dd-MM-yyyy HH:mm:ss.SSS");
-    public static final DateFormat DATE_ELAPSED = new SimpleDateFormat("HH:mm:ss");
+    private static void analyze(String[] args) throws Exception {
+        // follow growing log file or the newest file in directory
+        if (args.length == 2 && "--follow".equals(args[0])) {
+            follow(args[1]);
+            return;
+        }
 
-    public static final List<ScanData> DATA = new ArrayList<ScanData>();
-    public static final Pattern DATA_PATTERN = Pattern.compile("Cell ID: (\\d*), LAC: (\\d*), RSSI: (\\d*)");
-    public static final DecimalFormat DECIMAL = new DecimalFormat("0.00");
-    public static final int COUNT_OF_MEASURES = 60;
-    public static final int IGNORE_CELLS = 1;
+        // detect periods for grid of window sizes and thresholds
+        if (args.length >= 3 && "--sweep".equals(args[0])) {
+            loadData(readFiles(USE_SCAN_CACHE, getSources(Arrays.copyOfRange(args, 3, args.length))));
+            sweep(parseInts(args[1]), parseDoubles(args[2]));
+            return;
+        }
 
-    public static final boolean REMOVE_EMPTY_SCANS = false;
-    public static final boolean DUMP_MOVE_FUNCTION = true;
+        // replay scans through move detection of device at fixed rate and as scheduled by it
+        if (args.length >= 1 && "--replay".equals(args[0])) {
+            replay(readFiles(USE_SCAN_CACHE, getSources(Arrays.copyOfRange(args, 1, args.length))));
+            return;
+        }
 
-    public static void main(String[] args) throws Exception {
-        DATE_ELAPSED.setTimeZone(TimeZone.getTimeZone("UTC"));
-
-        // 13-04 group
-        // readFile("logs_13-04/LOG [13-04-2012 at 00-14].txt");
-        // readFile("logs_13-04/LOG [13-04-2012 at 07-51].txt");
-        // readFile("logs_13-04/LOG [13-04-2012 at 08-14].txt");
-        // readFile("logs_13-04/LOG [13-04-2012 at 09-17].txt");
-        // readFile("logs_13-04/LOG [13-04-2012 at 09-59].txt");
-        // readFile("logs_13-04/LOG [13-04-2012 at 14-47].txt");
-        // readFile("logs_13-04/LOG [13-04-2012 at 19-20].txt");
-        // readFile("logs_13-04/LOG [13-04-2012 at 22-32].txt");
-
-        // 14-04 group
-        // readFile("logs_14-04/LOG [14-04-2012 at 09-28].txt");
-        // readFile("logs_14-04/LOG [14-04-2012 at 14-39].txt");
-        // readFile("logs_14-04/LOG [14-04-2012 at 17-43].txt");
-        // readFile("logs_14-04/LOG [14-04-2012 at 18-40].txt");
-        // readFile("logs_14-04/LOG [14-04-2012 at 22-47].txt");
-
-        // 15-04 group
-        // readFile("logs_15-04/LOG [15-04-2012 at 10-47].txt");
-        // readFile("logs_15-04/LOG [15-04-2012 at 16-13].txt");
-        // readFile("logs_15-04/LOG [15-04-2012 at 17-39].txt");
-        // readFile("logs_15-04/LOG [15-04-2012 at 18-15].txt");
-        // readFile("logs_15-04/LOG [15-04-2012 at 21-05].txt");
-
-        // 16-04 group
-        // readFile("logs_16-04/LOG [16-04-2012 at 00-45].txt");
-        // readFile("logs_16-04/LOG [16-04-2012 at 07-20].txt");
-        // readFile("logs_16-04/LOG [16-04-2012 at 09-05].txt");
-        // readFile("logs_16-04/LOG [16-04-2012 at 16-46].txt");
-        // readFile("logs_16-04/LOG [16-04-2012 at 20-59].txt");
-
-        // 17-04 group
-        readFile("logs_17-04/LOG [17-04-2012 at 09-11].txt");
-        readFile("logs_17-04/LOG [17-04-2012 at 14-09].txt");
+        // stable periods with similar places visited before
+        if (args.length >= 1 && "--places".equals(args[0])) {
+            loadData(readFiles(USE_SCAN_CACHE, getSources(Arrays.copyOfRange(args, 1, args.length))));
+            places();
+            return;
+        }
 
-        // remove empty scan
-        removeEmptyScans();
+        if (args.length >= 3 && "--range".equals(args[0])) {
+            // only scans of time interval, found with scan index
+            loadData(readRange(parseTime(args[1]), parseTime(args[2]),
+                getSources(Arrays.copyOfRange(args, 3, args.length))));
+        } else {
+            // log files or directories with log files, 17-04 group by default
+            loadData(readFiles(USE_SCAN_CACHE, getSources(args)));
+        }
         System.out.println("Scanned, size: " + DATA.size());
 
         // moving periods for main function
-        List<Period> mainMovingPeriods = calculateMovingPeriods(60, 25);
+        List<Period> mainMovingPeriods = calculateMovingPeriods(60, 25, DUMP_MOVE_FUNCTION);
         System.out.println("Main periods.");
         for (Period period : mainMovingPeriods) {
-            System.out.println("Moved for " + DATE_ELAPSED.format(period.end.getTime() - period.start.getTime())
-                + " from " + DATE_LONG.format(period.start) + " - " + DATE_LONG.format(period.end));
+            System.out.println("Moved for " + TIMESTAMPS.formatElapsed(period.end - period.start)
+                + " from " + TIMESTAMPS.formatLong(period.start) + " - " + TIMESTAMPS.formatLong(period.end));
         }
 
         // moving periods for precise function
-//        List<Period> subMovingPeriods = calculateMovingPeriods(40, 2);
+//        List<Period> subMovingPeriods = calculateMovingPeriods(40, 2, DUMP_MOVE_FUNCTION);
 //        System.out.println("Sub periods.");
 //        for (Period period : subMovingPeriods) {
-//            System.out.println("Moved for " + DATE_ELAPSED.format(period.end.getTime() - period.start.getTime())
-//                + " from " + DATE_LONG.format(period.start) + " - " + DATE_LONG.format(period.end));
+//            System.out.println("Moved for " + TIMESTAMPS.formatElapsed(period.end - period.start)
+//                + " from " + TIMESTAMPS.formatLong(period.start) + " - " + TIMESTAMPS.formatLong(period.end));
 //        }
     }
 
+    /**
+     * Adds read scans to DATA, measures them and removes empty scans.
+     */
+    private static void loadData(ScanStore scans) {
+        DATA.addAll(scans);
+
+        if (metrics != Metrics.NONE) {
+            int emptyScans = 0;
+            for (int scan = 0; scan < DATA.size(); scan++) {
+                if (DATA.getCellsStart(scan) == DATA.getCellsEnd(scan)) {
+                    emptyScans++;
+                }
+                if (scan > 0) {
+                    metrics.scanGap(DATA.getScanTime(scan - 1), DATA.getScanTime(scan));
+                }
+            }
+            metrics.scansAnalyzed(DATA.size(), emptyScans, DATA.getCellCount());
+        }
+
+        // remove empty scan
+        removeEmptyScans();
+    }
+
     private static void removeEmptyScans() {
         if (!REMOVE_EMPTY_SCANS) {
             return;
         }
 
-        for (Iterator<ScanData> i = DATA.iterator(); i.hasNext();) {
-            if (i.next().cellData.size() == 0) {
-                i.remove();
-            }
-        }
+        DATA.removeEmptyScans();
     }
 
-    private static List<Period> calculateMovingPeriods(int scanPeriod, int threshold) {
-        List<Period> mainMovingPeriods = new ArrayList<Period>();
-        Period mainCurrentPeriod = null;
-        for (int i = 0; i < DATA.size() - scanPeriod; i++) {
-            Map<Integer, CellCalculatedInfo> map = new TreeMap<Integer, CellCalculatedInfo>();
-
-            // get scan data items
-            ScanData currentScanData = DATA.get(i + scanPeriod);
-
-            // fill map for next n measures
-            int j = 0;
-            while (j < scanPeriod) {
-                for (CellData item : DATA.get(i + j).cellData) {
-                    CellCalculatedInfo info = map.get(item.cellId);
-                    if (info == null) {
-                        info = new CellCalculatedInfo(item.cellId);
-                        map.put(item.cellId, info);
-                    }
-                    info.addRssi(item.rssi);
+    private static List<Period> calculateMovingPeriods(int scanPeriod, int threshold, final boolean dump) {
+        final List<Period> mainMovingPeriods = new ArrayList<Period>();
+        MoveDetector detector = new MoveDetector(DATA, scanPeriod, threshold, IGNORE_CELLS, new MoveDetector.Listener() {
+            @Override
+            public void moveCalculated(long scanTime, double moveFunction, double rssi) {
+                if (dump) {
+                    dumpMoveFunction(scanTime, moveFunction, rssi);
                 }
+            }
+
+            @Override
+            public void periodStarted(long start) {
+                // wait for period end
+            }
 
-                j++;
+            @Override
+            public void periodEnded(long start, long end) {
+                Period period = new Period();
+                period.start = start;
+                period.end = end;
+                mainMovingPeriods.add(period);
             }
+        });
+        detector.setMetrics(metrics);
+        detector.update();
+        detector.finish();
+        return mainMovingPeriods;
+    }
+
+    private static void follow(String source) throws IOException, ParseException, InterruptedException {
+        // window, scan removed from window and current scan are kept
+        final ScanRing scans = new ScanRing(COUNT_OF_MEASURES + 2, (COUNT_OF_MEASURES + 2) * FOLLOW_CELL_COUNT);
+        final MoveDetector detector = new MoveDetector(scans, COUNT_OF_MEASURES, MOVE_THRESHOLD, IGNORE_CELLS,
+            new MoveDetector.Listener() {
+                @Override
+                public void moveCalculated(long scanTime, double moveFunction, double rssi) {
+                    dumpMoveFunction(scanTime, moveFunction, rssi);
+                }
+
+                @Override
+                public void periodStarted(long start) {
+                    System.out.println("Moving from " + TIMESTAMPS.formatLong(start));
+                }
 
-            // fill measures to array
-            // calculate change of RSSI
-            double rssi = 0;
-            int n = map.size();
-            double[] data = new double[n];
-            int index = 0;
-            for (CellCalculatedInfo info : map.values()) {
-                if (info.getCount() > IGNORE_CELLS) {
-                    data[index++] = info.getCount();
-                    rssi += deviation(info.getRssis());
+                @Override
+                public void periodEnded(long start, long end) {
+                    System.out.println("Moved for " + TIMESTAMPS.formatElapsed(end - start)
+                        + " from " + TIMESTAMPS.formatLong(start) + " - " + TIMESTAMPS.formatLong(end));
                 }
+            });
+
+        // move function of scan depends only on preceding scans, so it is calculated as soon as scan is started
+        LogTailer tailer = new LogTailer(new File(source), new LogParser.ScanHandler() {
+            @Override
+            public void scanStarted(long scanTime) {
+                scans.scanStarted(scanTime);
+                detector.update();
             }
-            data = Arrays.copyOf(data, index);
 
-            // average and deviation
-            double deviation = deviation(data);
+            @Override
+            public void cellScanned(int cellId, int lac, int rssi) {
+                scans.cellScanned(cellId, lac, rssi);
+            }
+        });
+        while (!Thread.currentThread().isInterrupted()) {
+            if (!tailer.poll()) {
+                Thread.sleep(FOLLOW_INTERVAL);
+            }
+        }
+    }
+
+    private static void sweep(int[] scanPeriods, double[] thresholds) {
+        long start = System.nanoTime();
+        List<MoveSweep.Result> results = MoveSweep.sweep(POOL, DATA, scanPeriods, thresholds, IGNORE_CELLS);
+        metrics.phaseTimed("sweep", System.nanoTime() - start);
+
+        System.out.println("Window\tThreshold\tPeriods\tMoving\t\tLongest");
+        for (MoveSweep.Result result : results) {
+            System.out.println(result.getScanPeriod() + "\t" + DECIMAL.format(result.getThreshold())
+                + "\t\t" + result.getPeriodCount() + "\t" + formatDuration(result.getMovingTime())
+                + "\t" + formatDuration(result.getLongestPeriod()));
+        }
 
-            // calculate move function
-            currentScanData.moveFunction = rssi * rssi / deviation / deviation;
-            if (deviation < 1) {
-                currentScanData.moveFunction = deviation;
+        for (MoveSweep.Result result : results) {
+            System.out.println("Periods for window " + result.getScanPeriod()
+                + ", threshold " + DECIMAL.format(result.getThreshold()) + ".");
+            for (int i = 0; i < result.getPeriodCount(); i++) {
+                System.out.println("Moved for " + TIMESTAMPS.formatElapsed(result.getEnd(i) - result.getStart(i))
+                    + " from " + TIMESTAMPS.formatLong(result.getStart(i)) + " - " + TIMESTAMPS.formatLong(result.getEnd(i)));
             }
+        }
+    }
 
-            // calculate move periods
-            boolean moved = currentScanData.moveFunction > threshold;
-            if (moved) {
-                if (mainCurrentPeriod == null) {
-                    mainCurrentPeriod = new Period();
-                    mainCurrentPeriod.start = DATA.get(i).scanTime;
-                    mainMovingPeriods.add(mainCurrentPeriod);
-                }
+    /**
+     * Prints moving periods detected by device code, scans are replayed as scheduled at fixed rate and adaptively,
+     * empty scans included.
+     */
+    private static void replay(ScanStore scans) {
+        for (boolean adaptive : new boolean[] {false, true}) {
+            MoveReplay.Result result = MoveReplay.replay(scans, adaptive);
+            metrics.phaseTimed("replay", result.getNanoseconds());
+
+            System.out.println("Replay " + (adaptive ? "adaptive" : "at fixed rate") + ", scans: "
+                + result.getScanCount() + " of " + scans.size() + ", " + result.getScansPerSecond() + " scans/s"
+                + ", moving: " + formatDuration(result.getMovingTime()));
+            for (int i = 0; i < result.getPeriodCount(); i++) {
+                System.out.println("Moved for " + TIMESTAMPS.formatElapsed(result.getEnd(i) - result.getStart(i))
+                    + " from " + TIMESTAMPS.formatLong(result.getStart(i)) + " - " + TIMESTAMPS.formatLong(result.getEnd(i)));
+            }
+        }
+    }
 
-                mainCurrentPeriod.end = DATA.get(i).scanTime;
-            } else if (mainCurrentPeriod != null) {
-                mainCurrentPeriod = null;
+    /**
+     * Prints stable periods between moving periods, each with the most similar places stayed at before it.
+     */
+    private static void places() {
+        List<Period> stablePeriods = new ArrayList<Period>();
+        long start = DATA.size() > 0 ? DATA.getScanTime(0) : 0;
+        for (Period movingPeriod : calculateMovingPeriods(COUNT_OF_MEASURES, MOVE_THRESHOLD, false)) {
+            Period period = new Period();
+            period.start = start;
+            period.end = movingPeriod.start;
+            stablePeriods.add(period);
+            start = movingPeriod.end;
+        }
+        if (DATA.size() > 0) {
+            Period period = new Period();
+            period.start = start;
+            period.end = DATA.getScanTime(DATA.size() - 1);
+            stablePeriods.add(period);
+        }
+
+        // places are added after search, so only earlier places are found
+        PlaceIndex index = new PlaceIndex();
+        for (Period period : stablePeriods) {
+            int fromScan = DATA.findScan(period.start);
+            int toScan = DATA.findScan(period.end + 1);
+            if (period.end - period.start < PLACE_MIN_DURATION || fromScan == toScan) {
+                continue;
             }
 
-            if (DUMP_MOVE_FUNCTION) {
-                System.out.println(currentScanData.caption + "\t" + DECIMAL.format(currentScanData.moveFunction)
-//                    + "\tdeviation: " + DECIMAL.format(deviation)
-                    + "\t" + DECIMAL.format(rssi)
-                    // + "\tcounts: " + Arrays.toString(data)
-                    );
+            PlaceIndex.Place place = index.createPlace(DATA, fromScan, toScan, IGNORE_CELLS);
+            System.out.println("Stayed for " + formatDuration(place.getEnd() - place.getStart())
+                + " from " + TIMESTAMPS.formatLong(place.getStart()) + " - " + TIMESTAMPS.formatLong(place.getEnd())
+                + ", cells: " + place.getCellCount());
+
+            List<PlaceIndex.Match> matches = index.findSimilar(place, PLACE_SIMILARITY);
+            for (PlaceIndex.Match match : matches.subList(0, Math.min(matches.size(), PLACE_MATCHES))) {
+                PlaceIndex.Place before = match.getPlace();
+                System.out.println("\tBefore for " + formatDuration(before.getEnd() - before.getStart())
+                    + " from " + TIMESTAMPS.formatLong(before.getStart()) + " - " + TIMESTAMPS.formatLong(before.getEnd())
+                    + ", similarity " + DECIMAL.format(match.getSimilarity()));
             }
+            index.add(place);
         }
-        return mainMovingPeriods;
     }
 
-    private static double average(double[] data) {
-        double avg = 0;
-        for (double element : data) {
-            avg += element / data.length;
+    /**
+     * Formats duration as elapsed time of other modes, whole days of durations like total moving time are prepended.
+     */
+    static String formatDuration(long milliseconds) {
+        StringBuilder builder = new StringBuilder();
+        if (milliseconds >= DAY) {
+            builder.append(milliseconds / DAY).append("d ");
         }
-        return avg;
+        return TIMESTAMPS.appendElapsed(builder, milliseconds).toString();
     }
 
-    private static double deviation(double[] data) {
-        if (data.length < 2) {
-            return 0;
+    /**
+     * Parses time in log format, missing end of time like seconds or milliseconds is taken as zero.
+     */
+    private static long parseTime(String value) {
+        String zero = "01-01-1970 00:00:00.000";
+        if (value.length() < zero.length()) {
+            value += zero.substring(value.length());
         }
-        double avg = average(data);
-        double sum = 0;
-        for (double element : data) {
-            sum += (element - avg) * (element - avg);
+        return TIMESTAMPS.parseLong(value, 0);
+    }
+
+    private static int[] parseInts(String values) {
+        String[] items = values.split(",");
+        int[] result = new int[items.length];
+        for (int i = 0; i < items.length; i++) {
+            result[i] = Integer.parseInt(items[i].trim());
         }
+        return result;
+    }
 
-        return Math.sqrt(sum / (data.length - 1));
+    private static double[] parseDoubles(String values) {
+        String[] items = values.split(",");
+        double[] result = new double[items.length];
+        for (int i = 0; i < items.length; i++) {
+            result[i] = Double.parseDouble(items[i].trim());
+        }
+        return result;
     }
 
-    private static void readFile(String fileName) throws IOException, ParseException {
-        BufferedReader reader = new BufferedReader(new FileReader(fileName));
-        try {
-            // current scan item
-            ScanData currentScanData = null;
+    private static void dumpMoveFunction(long scanTime, double moveFunction, double rssi) {
+        if (DUMP_MOVE_FUNCTION) {
+            System.out.println("---Scan start at " + TIMESTAMPS.formatLong(scanTime)
+                + "\t" + DECIMAL.format(moveFunction)
+                + "\t" + DECIMAL.format(rssi)
+                );
+        }
+    }
 
-            while (true) {
-                String line = reader.readLine();
-                if (line == null) {
-                    break;
-                }
+    static double average(double[] data) {
+        return Statistics.average(data);
+    }
+
+    static double deviation(double[] data) {
+        return Statistics.deviation(data);
+    }
 
-                // remove date-time from log line
-                line = line.substring(32);
-
-                if (line.startsWith("---Scan")) {
-                    currentScanData = new ScanData(line);
-                    DATA.add(currentScanData);
-                } else if (line.startsWith("---Processed")) {
-                    currentScanData = null;
-                } else if (currentScanData != null) {
-                    Matcher matcher = DATA_PATTERN.matcher(line);
-                    if (matcher.matches()) {
-                        currentScanData.addData(matcher.group(1), matcher.group(2), matcher.group(3));
+    private static String[] getSources(String[] args) {
+        return args.length > 0 ? args : new String[] {"logs_17-04"};
+    }
+
+    /**
+     * @return log files, directories are replaced with files in them
+     */
+    static List<File> getFiles(String... sources) {
+        List<File> files = new ArrayList<File>();
+        for (String source : sources) {
+            File file = new File(source);
+            if (file.isDirectory()) {
+                File[] children = file.listFiles();
+                Arrays.sort(children);
+                for (File child : children) {
+                    // device log directory holds index and temporary files of log writer too
+                    if (child.isFile() && LogParser.isLog(child)) {
+                        files.add(child);
                     }
                 }
+            } else {
+                files.add(file);
+            }
+        }
+
+        return files;
+    }
+
+    /**
+     * @return time ordered scans of all given log files and directories
+     */
+    static ScanStore readFiles(boolean useCache, String... sources) {
+        List<File> files = getFiles(sources);
+        if (files.isEmpty()) {
+            return new ScanStore();
+        }
+        return POOL.invoke(new ReadTask(files, 0, files.size(), useCache));
+    }
+
+    /**
+     * @return time ordered scans of given log files and directories with scan time in [from, to)
+     */
+    static ScanStore readRange(long from, long to, String... sources) throws IOException, ParseException {
+        long start = System.nanoTime();
+        ScanStore result = ScanIndex.read(getFiles(sources), from, to);
+        metrics.phaseTimed("range", System.nanoTime() - start);
+        return result;
+    }
+
+    static ScanStore readFile(File file, boolean useCache) throws IOException, ParseException {
+        long start = System.nanoTime();
+        if (useCache) {
+            ScanStore cached = ScanCache.load(file);
+            if (cached != null) {
+                measureFile(file, -1, cached, true, start, "cache");
+                return cached;
+            }
+        }
+
+        ScanStore result = new ScanStore();
+        int lines = LogParser.parse(file, result);
+
+        // scans of one file are expected to be in time order, but device clock may be adjusted
+        result = result.sortByTime();
+        measureFile(file, lines, result, false, start, "parse");
+
+        if (useCache) {
+            try {
+                ScanCache.save(file, result);
+            } catch (IOException e) {
+                System.err.println("Failed to cache scans of '" + file + "': " + e.getMessage());
+            }
+        }
+        return result;
+    }
+
+    private static void measureFile(File file, long lines, ScanStore scans, boolean cached, long start, String phase) {
+        if (metrics == Metrics.NONE) {
+            return;
+        }
+
+        long time = System.nanoTime() - start;
+        int emptyScans = 0;
+        for (int scan = 0; scan < scans.size(); scan++) {
+            if (scans.getCellsStart(scan) == scans.getCellsEnd(scan)) {
+                emptyScans++;
             }
-        } finally {
-            reader.close();
         }
+        metrics.fileRead(file, file.length(), lines, scans.size(), emptyScans, scans.getCellCount(), cached, time);
+        metrics.phaseTimed(phase, time);
     }
 }
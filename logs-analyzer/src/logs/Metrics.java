@@ -0,0 +1,58 @@
+package logs;
+
+import java.io.File;
+
+/**
+ * Receives measures of log reading and analysis. Files are read in parallel, so implementations should be thread safe.
+ */
+public interface Metrics {
+    /**
+     * Metrics which ignore all measures.
+     */
+    Metrics NONE = new Metrics() {
+        @Override
+        public void fileRead(File file, long bytes, long lines, int scans, int emptyScans, int cells, boolean cached,
+            long nanoseconds) {
+            // ignored
+        }
+
+        @Override
+        public void phaseTimed(String phase, long nanoseconds) {
+            // ignored
+        }
+
+        @Override
+        public void scansAnalyzed(int scans, int emptyScans, int cells) {
+            // ignored
+        }
+
+        @Override
+        public void scanGap(long previousScanTime, long scanTime) {
+            // ignored
+        }
+    };
+
+    /**
+     * Called when scans of log file are read.
+     *
+     * @param lines count of parsed lines or -1 if scans are loaded from cache
+     * @param cached true if scans are loaded from cache
+     */
+    void fileRead(File file, long bytes, long lines, int scans, int emptyScans, int cells, boolean cached,
+        long nanoseconds);
+
+    /**
+     * Adds time spent in phase of reading or analysis, like parse, merge, window or period.
+     */
+    void phaseTimed(String phase, long nanoseconds);
+
+    /**
+     * Called when scans of all files are read, before empty scans are removed.
+     */
+    void scansAnalyzed(int scans, int emptyScans, int cells);
+
+    /**
+     * Called for each pair of consecutive scans of analyzed data.
+     */
+    void scanGap(long previousScanTime, long scanTime);
+}
@@ -0,0 +1,206 @@
+package logs;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import my.activity.demo.util.TimestampCodec;
+
+/**
+ * Metrics collected in memory and printed as summary tables: read files with their rates, time of phases, counts of
+ * scans and distribution of gaps between scans with the longest ones. Files parsed at less than half of the overall
+ * parse rate are marked as slow.
+ */
+public class MetricsSummary implements Metrics {
+    private static final long[] GAP_LIMITS = {15 * 1000, 60 * 1000, 10 * 60 * 1000, 60 * 60 * 1000};
+    private static final String[] GAP_NAMES = {"<= 15s", "<= 1m", "<= 10m", "<= 1h", "> 1h"};
+    private static final int LONGEST_GAPS = 5;
+
+    private static final DecimalFormat DECIMAL = new DecimalFormat("0.0");
+
+    private static class FileRead {
+        private File file;
+        private long bytes;
+        private long lines;
+        private int scans;
+        private int emptyScans;
+        private int cells;
+        private boolean cached;
+        private long nanoseconds;
+    }
+
+    private final TimestampCodec timestamps;
+    private final List<FileRead> files = new ArrayList<FileRead>();
+    private final Map<String, Long> phases = new LinkedHashMap<String, Long>();
+    private int scans;
+    private int emptyScans;
+    private int cells;
+
+    private final long[] gapCounts = new long[GAP_NAMES.length];
+    // the longest gaps, sorted from the longest one
+    private final long[] gapStarts = new long[LONGEST_GAPS];
+    private final long[] gapEnds = new long[LONGEST_GAPS];
+    private int gapCount;
+
+    public MetricsSummary(TimestampCodec timestamps) {
+        this.timestamps = timestamps;
+    }
+
+    @Override
+    public synchronized void fileRead(File file, long bytes, long lines, int scans, int emptyScans, int cells,
+        boolean cached, long nanoseconds) {
+        FileRead read = new FileRead();
+        read.file = file;
+        read.bytes = bytes;
+        read.lines = lines;
+        read.scans = scans;
+        read.emptyScans = emptyScans;
+        read.cells = cells;
+        read.cached = cached;
+        read.nanoseconds = nanoseconds;
+        files.add(read);
+    }
+
+    @Override
+    public synchronized void phaseTimed(String phase, long nanoseconds) {
+        Long time = phases.get(phase);
+        phases.put(phase, (time == null ? 0 : time) + nanoseconds);
+    }
+
+    @Override
+    public synchronized void scansAnalyzed(int scans, int emptyScans, int cells) {
+        this.scans += scans;
+        this.emptyScans += emptyScans;
+        this.cells += cells;
+    }
+
+    @Override
+    public synchronized void scanGap(long previousScanTime, long scanTime) {
+        long gap = scanTime - previousScanTime;
+        int bucket = 0;
+        while (bucket < GAP_LIMITS.length && gap > GAP_LIMITS[bucket]) {
+            bucket++;
+        }
+        gapCounts[bucket]++;
+
+        // insert into longest gaps
+        int position = gapCount;
+        while (position > 0 && gapEnds[position - 1] - gapStarts[position - 1] < gap) {
+            position--;
+        }
+        if (position < LONGEST_GAPS) {
+            int moved = Math.min(gapCount, LONGEST_GAPS - 1) - position;
+            System.arraycopy(gapStarts, position, gapStarts, position + 1, moved);
+            System.arraycopy(gapEnds, position, gapEnds, position + 1, moved);
+            gapStarts[position] = previousScanTime;
+            gapEnds[position] = scanTime;
+            gapCount = Math.min(gapCount + 1, LONGEST_GAPS);
+        }
+    }
+
+    public synchronized void print(PrintStream out) {
+        printFiles(out);
+        printPhases(out);
+        printScans(out);
+    }
+
+    private void printFiles(PrintStream out) {
+        if (files.isEmpty()) {
+            return;
+        }
+
+        List<FileRead> sorted = new ArrayList<FileRead>(files);
+        Collections.sort(sorted, new Comparator<FileRead>() {
+            @Override
+            public int compare(FileRead first, FileRead second) {
+                return first.file.getPath().compareTo(second.file.getPath());
+            }
+        });
+
+        FileRead total = new FileRead();
+        total.file = new File("Total");
+        total.lines = -1;
+        long parsedBytes = 0;
+        long parseTime = 0;
+        for (FileRead read : sorted) {
+            total.bytes += read.bytes;
+            total.lines = read.lines < 0 ? total.lines : Math.max(total.lines, 0) + read.lines;
+            total.scans += read.scans;
+            total.emptyScans += read.emptyScans;
+            total.cells += read.cells;
+            total.nanoseconds += read.nanoseconds;
+            if (!read.cached) {
+                parsedBytes += read.bytes;
+                parseTime += read.nanoseconds;
+            }
+        }
+        double parseRate = rate(parsedBytes, parseTime);
+
+        out.println("File\tBytes\tLines\tScans\tEmpty\tCells\tms\tMB/s\tScans/s\tCells/s");
+        for (FileRead read : sorted) {
+            String mark = "";
+            if (read.cached) {
+                mark = " cached";
+            } else if (rate(read.bytes, read.nanoseconds) < parseRate / 2) {
+                mark = " slow";
+            }
+            printFile(out, read, mark);
+        }
+        printFile(out, total, "");
+    }
+
+    private void printFile(PrintStream out, FileRead read, String mark) {
+        out.println(read.file.getName() + "\t" + read.bytes + "\t" + (read.lines < 0 ? "-" : read.lines)
+            + "\t" + read.scans + "\t" + percent(read.emptyScans, read.scans) + "\t" + read.cells
+            + "\t" + DECIMAL.format(read.nanoseconds / 1e6) + "\t" + DECIMAL.format(rate(read.bytes, read.nanoseconds))
+            + "\t" + perSecond(read.scans, read.nanoseconds) + "\t" + perSecond(read.cells, read.nanoseconds) + mark);
+    }
+
+    private void printPhases(PrintStream out) {
+        if (phases.isEmpty()) {
+            return;
+        }
+
+        // parallel phases are summed over threads, so they may take more than total
+        Long total = phases.get("total");
+        out.println("Phase\tms\tShare");
+        for (Map.Entry<String, Long> phase : phases.entrySet()) {
+            out.println(phase.getKey() + "\t" + DECIMAL.format(phase.getValue() / 1e6)
+                + "\t" + (total == null ? "-" : percent(phase.getValue(), total)));
+        }
+    }
+
+    private void printScans(PrintStream out) {
+        out.println("Scans: " + scans + ", empty: " + emptyScans + " (" + percent(emptyScans, scans) + ")"
+            + ", cells: " + cells + ", cells per scan: " + DECIMAL.format(scans == 0 ? 0 : (double) cells / scans));
+
+        StringBuilder gaps = new StringBuilder("Gaps:");
+        for (int i = 0; i < GAP_NAMES.length; i++) {
+            gaps.append(i == 0 ? " " : ", ").append(GAP_NAMES[i]).append(": ").append(gapCounts[i]);
+        }
+        out.println(gaps);
+
+        for (int i = 0; i < gapCount; i++) {
+            out.println("Gap of " + LogsReader.formatDuration(gapEnds[i] - gapStarts[i])
+                + " from " + timestamps.formatLong(gapStarts[i]) + " - " + timestamps.formatLong(gapEnds[i]));
+        }
+    }
+
+    private static double rate(long bytes, long nanoseconds) {
+        return nanoseconds == 0 ? 0 : bytes / 1e6 / (nanoseconds / 1e9);
+    }
+
+    private static long perSecond(long count, long nanoseconds) {
+        return nanoseconds == 0 ? 0 : Math.round(count / (nanoseconds / 1e9));
+    }
+
+    private static String percent(long part, long whole) {
+        return whole == 0 ? "-" : DECIMAL.format(part * 100.0 / whole) + "%";
+    }
+}
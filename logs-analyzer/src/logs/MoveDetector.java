@@ -0,0 +1,138 @@
+package logs;
+
+import my.activity.demo.location.MoveWindow;
+import my.activity.demo.location.ScanHistory;
+
+/**
+ * Detects moving periods over scans of the store. Move function for scan is calculated from the window of
+ * preceding scans, so it is known as soon as the scan is started. Detector can be updated each time new scans are
+ * added to the store, only scans added since previous update are processed.
+ */
+public class MoveDetector {
+    public interface Listener {
+        void moveCalculated(long scanTime, double moveFunction, double rssi);
+
+        void periodStarted(long start);
+
+        void periodEnded(long start, long end);
+    }
+
+    private final ScanHistory store;
+    private final int scanPeriod;
+    private final double threshold;
+    private final Listener listener;
+    private final MoveWindow window;
+    private Metrics metrics = Metrics.NONE;
+
+    // next scan to calculate move function for and bounds of scans in window
+    private int currentScan;
+    private int windowStart;
+    private int windowEnd;
+
+    private boolean moving;
+    private long periodStart;
+    private long periodEnd;
+
+    public MoveDetector(ScanHistory store, int scanPeriod, double threshold, int ignoreCells, Listener listener) {
+        this.store = store;
+        this.scanPeriod = scanPeriod;
+        this.threshold = threshold;
+        this.listener = listener;
+        this.window = new MoveWindow(ignoreCells);
+    }
+
+    /**
+     * Sets metrics, which get time of window updates and of move function and period calculation, the latter includes
+     * time of listener calls.
+     */
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Calculates move function for scans added to the store since previous update.
+     */
+    public void update() {
+        boolean timed = metrics != Metrics.NONE;
+        long windowTime = 0;
+        long periodTime = 0;
+        while (currentScan < store.size()) {
+            long start = timed ? System.nanoTime() : 0;
+
+            // window contains scans preceding current one
+            while (windowEnd < currentScan) {
+                addToWindow(windowEnd++);
+            }
+            while (windowStart < currentScan - scanPeriod) {
+                removeFromWindow(windowStart++);
+            }
+
+            long windowUpdated = timed ? System.nanoTime() : 0;
+            if (currentScan >= scanPeriod) {
+                calculate(currentScan);
+            }
+            currentScan++;
+
+            if (timed) {
+                windowTime += windowUpdated - start;
+                periodTime += System.nanoTime() - windowUpdated;
+            }
+        }
+
+        if (timed) {
+            metrics.phaseTimed("window", windowTime);
+            metrics.phaseTimed("period", periodTime);
+        }
+    }
+
+    /**
+     * Ends current moving period, if any.
+     */
+    public void finish() {
+        if (moving) {
+            moving = false;
+            listener.periodEnded(periodStart, periodEnd);
+        }
+    }
+
+    private void calculate(int scan) {
+        // calculate change of RSSI
+        double rssi = window.getRssiDeviation();
+
+        // average and deviation
+        double deviation = window.getCountDeviation();
+
+        // calculate move function
+        double moveFunction = rssi * rssi / deviation / deviation;
+        if (deviation < 1) {
+            moveFunction = deviation;
+        }
+        listener.moveCalculated(store.getScanTime(scan), moveFunction, rssi);
+
+        // calculate move periods, period is bound by the first scans of windows
+        long windowTime = store.getScanTime(scan - scanPeriod);
+        if (moveFunction > threshold) {
+            if (!moving) {
+                moving = true;
+                periodStart = windowTime;
+                listener.periodStarted(periodStart);
+            }
+
+            periodEnd = windowTime;
+        } else {
+            finish();
+        }
+    }
+
+    private void addToWindow(int scan) {
+        for (int cell = store.getCellsStart(scan); cell < store.getCellsEnd(scan); cell++) {
+            window.add(store.getCellId(cell), store.getRssi(cell));
+        }
+    }
+
+    private void removeFromWindow(int scan) {
+        for (int cell = store.getCellsStart(scan); cell < store.getCellsEnd(scan); cell++) {
+            window.remove(store.getCellId(cell), store.getRssi(cell));
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package logs;
+
+import java.util.Arrays;
+
+import my.activity.demo.location.MoveTracker;
+import my.activity.demo.location.ScanConsumer;
+import my.activity.demo.location.ScanHistory;
+
+/**
+ * Replays recorded scans through {@link MoveTracker}, the move detection of CellScanService, as fast as they can be
+ * processed. Recorded scans are taken as tracker schedules them, at fixed rate or adaptively: scan recorded before the
+ * next scan is due is skipped, so replay sees what device would scan. Even at fixed rate not all recorded scans are
+ * taken: logs repeat scans 0.1-0.5 s after the previous one, on 17-04 1516 of 3923 scans, and the older service
+ * scanned at shorter intervals, so replay at fixed rate takes 2339 of them. Periods of replay are checked against
+ * {@link MoveDetector} over taken scans by LogsCheck.
+ */
+public class MoveReplay {
+    public static class Result {
+        private final boolean adaptive;
+        private long[] starts = new long[16];
+        private long[] ends = new long[16];
+        private int count;
+        private int scanCount;
+        private long nanoseconds;
+
+        private Result(boolean adaptive) {
+            this.adaptive = adaptive;
+        }
+
+        public boolean isAdaptive() {
+            return adaptive;
+        }
+
+        public int getPeriodCount() {
+            return count;
+        }
+
+        public long getStart(int period) {
+            return starts[period];
+        }
+
+        public long getEnd(int period) {
+            return ends[period];
+        }
+
+        public long getMovingTime() {
+            long result = 0;
+            for (int i = 0; i < count; i++) {
+                result += ends[i] - starts[i];
+            }
+            return result;
+        }
+
+        /**
+         * @return count of recorded scans taken by tracker
+         */
+        public int getScanCount() {
+            return scanCount;
+        }
+
+        public long getNanoseconds() {
+            return nanoseconds;
+        }
+
+        public long getScansPerSecond() {
+            return nanoseconds == 0 ? 0 : Math.round(scanCount / (nanoseconds / 1e9));
+        }
+
+        private void startPeriod(long start) {
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count * 2);
+                ends = Arrays.copyOf(ends, count * 2);
+            }
+            starts[count] = start;
+            ends[count] = start;
+            count++;
+        }
+    }
+
+    // recorded scan intervals are not exact, scan is taken if it is recorded this close before it is due
+    private static final long SCHEDULE_TOLERANCE = 2 * 1000;
+
+    private MoveReplay() {
+    }
+
+    /**
+     * @param adaptive true if tracker chooses scan interval by move function, false if scans are taken at fixed rate
+     */
+    public static Result replay(ScanHistory scans, boolean adaptive) {
+        return replay(scans, adaptive, null);
+    }
+
+    /**
+     * @param taken consumer, which gets scans taken by tracker, or null
+     */
+    public static Result replay(ScanHistory scans, boolean adaptive, ScanConsumer taken) {
+        final Result result = new Result(adaptive);
+        MoveTracker tracker = new MoveTracker(adaptive, new MoveTracker.Listener() {
+            @Override
+            public void movingStarted(long start) {
+                result.startPeriod(start);
+            }
+
+            @Override
+            public void movingContinued(long end) {
+                result.ends[result.count - 1] = end;
+            }
+
+            @Override
+            public void movingStopped() {
+                // period is complete
+            }
+        });
+
+        long start = System.nanoTime();
+        long nextScanTime = Long.MIN_VALUE;
+        for (int scan = 0; scan < scans.size(); scan++) {
+            long scanTime = scans.getScanTime(scan);
+            if (scanTime + SCHEDULE_TOLERANCE < nextScanTime) {
+                continue;
+            }
+
+            tracker.scanStarted(scanTime);
+            for (int cell = scans.getCellsStart(scan); cell < scans.getCellsEnd(scan); cell++) {
+                tracker.cellScanned(scans.getCellId(cell), scans.getLac(cell), scans.getRssi(cell));
+            }
+            if (taken != null) {
+                taken.scanStarted(scanTime);
+                for (int cell = scans.getCellsStart(scan); cell < scans.getCellsEnd(scan); cell++) {
+                    taken.cellScanned(scans.getCellId(cell), scans.getLac(cell), scans.getRssi(cell));
+                }
+            }
+            nextScanTime = scanTime + tracker.scanFinished();
+        }
+        result.nanoseconds = System.nanoTime() - start;
+        result.scanCount = tracker.getScanCount();
+        return result;
+    }
+}
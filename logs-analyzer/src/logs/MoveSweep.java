@@ -0,0 +1,164 @@
+package logs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Detects moving periods for grid of window sizes and thresholds. Move function series is calculated once per
+ * window size, windows are processed in parallel, and all thresholds are applied to the same series.
+ */
+public class MoveSweep {
+    public static class Result {
+        private final int scanPeriod;
+        private final double threshold;
+        private long[] starts = new long[16];
+        private long[] ends = new long[16];
+        private int count;
+
+        private Result(int scanPeriod, double threshold) {
+            this.scanPeriod = scanPeriod;
+            this.threshold = threshold;
+        }
+
+        public int getScanPeriod() {
+            return scanPeriod;
+        }
+
+        public double getThreshold() {
+            return threshold;
+        }
+
+        public int getPeriodCount() {
+            return count;
+        }
+
+        public long getStart(int period) {
+            return starts[period];
+        }
+
+        public long getEnd(int period) {
+            return ends[period];
+        }
+
+        public long getMovingTime() {
+            long result = 0;
+            for (int i = 0; i < count; i++) {
+                result += ends[i] - starts[i];
+            }
+            return result;
+        }
+
+        public long getLongestPeriod() {
+            long result = 0;
+            for (int i = 0; i < count; i++) {
+                result = Math.max(result, ends[i] - starts[i]);
+            }
+            return result;
+        }
+
+        private void addPeriod(long start, long end) {
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count * 2);
+                ends = Arrays.copyOf(ends, count * 2);
+            }
+            starts[count] = start;
+            ends[count] = end;
+            count++;
+        }
+    }
+
+    private static class WindowTask extends RecursiveTask<List<Result>> {
+        private static final long serialVersionUID = 3581367930658147617L;
+
+        private final ScanStore store;
+        private final int scanPeriod;
+        private final double[] thresholds;
+        private final int ignoreCells;
+
+        private WindowTask(ScanStore store, int scanPeriod, double[] thresholds, int ignoreCells) {
+            this.store = store;
+            this.scanPeriod = scanPeriod;
+            this.thresholds = thresholds;
+            this.ignoreCells = ignoreCells;
+        }
+
+        @Override
+        protected List<Result> compute() {
+            // move function of scan i + scanPeriod is stored at i, so it is bound to the first scan of its window
+            final double[] moveFunctions = new double[Math.max(store.size() - scanPeriod, 0)];
+            MoveDetector detector = new MoveDetector(store, scanPeriod, Double.POSITIVE_INFINITY, ignoreCells,
+                new MoveDetector.Listener() {
+                    private int index;
+
+                    @Override
+                    public void moveCalculated(long scanTime, double moveFunction, double rssi) {
+                        moveFunctions[index++] = moveFunction;
+                    }
+
+                    @Override
+                    public void periodStarted(long start) {
+                        // never moving with infinite threshold
+                    }
+
+                    @Override
+                    public void periodEnded(long start, long end) {
+                        // never moving with infinite threshold
+                    }
+                });
+            detector.update();
+
+            List<Result> results = new ArrayList<Result>(thresholds.length);
+            for (double threshold : thresholds) {
+                Result result = new Result(scanPeriod, threshold);
+                boolean moving = false;
+                long start = 0;
+                long end = 0;
+                for (int i = 0; i < moveFunctions.length; i++) {
+                    if (moveFunctions[i] > threshold) {
+                        if (!moving) {
+                            moving = true;
+                            start = store.getScanTime(i);
+                        }
+                        end = store.getScanTime(i);
+                    } else if (moving) {
+                        moving = false;
+                        result.addPeriod(start, end);
+                    }
+                }
+                if (moving) {
+                    result.addPeriod(start, end);
+                }
+                results.add(result);
+            }
+            return results;
+        }
+    }
+
+    /**
+     * @return results ordered by window size and then by threshold, as they are given
+     */
+    public static List<Result> sweep(ForkJoinPool pool, final ScanStore store, final int[] scanPeriods,
+        final double[] thresholds, final int ignoreCells) {
+        return pool.invoke(new RecursiveTask<List<Result>>() {
+            private static final long serialVersionUID = -2178906329150385413L;
+
+            @Override
+            protected List<Result> compute() {
+                List<WindowTask> tasks = new ArrayList<WindowTask>(scanPeriods.length);
+                for (int scanPeriod : scanPeriods) {
+                    tasks.add(new WindowTask(store, scanPeriod, thresholds, ignoreCells));
+                }
+                invokeAll(tasks);
+
+                List<Result> results = new ArrayList<Result>(scanPeriods.length * thresholds.length);
+                for (WindowTask task : tasks) {
+                    results.addAll(task.join());
+                }
+                return results;
+            }
+        });
+    }
+}
@@ -0,0 +1,246 @@
+package logs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of places where device stayed. Place is a stable period together with set of (LAC, cell ID) pairs seen in it,
+ * the set works as fingerprint of location. Places are found by cell through inverted index and similar places are
+ * found through MinHash signatures split into LSH bands, so only places sharing a band bucket are compared and the
+ * query does not depend on count of indexed places.
+ */
+public class PlaceIndex {
+    // signature length is BANDS * ROWS, bands of 4 rows make places with similarity above ~0.5 likely candidates
+    private static final int BANDS = 16;
+    private static final int ROWS = 4;
+    private static final int SIGNATURE_LENGTH = BANDS * ROWS;
+
+    public static class Place {
+        private final int id;
+        private final long start;
+        private final long end;
+        private final long[] cells;
+        private final long[] signature;
+
+        private Place(int id, long start, long end, long[] cells) {
+            this.id = id;
+            this.start = start;
+            this.end = end;
+            this.cells = cells;
+            this.signature = signature(cells);
+        }
+
+        public long getStart() {
+            return start;
+        }
+
+        public long getEnd() {
+            return end;
+        }
+
+        public int getCellCount() {
+            return cells.length;
+        }
+
+        public int getLac(int cell) {
+            return (int) (cells[cell] >>> 32);
+        }
+
+        public int getCellId(int cell) {
+            return (int) cells[cell];
+        }
+
+        /**
+         * @return Jaccard similarity of cell sets
+         */
+        public double getSimilarity(Place place) {
+            int common = 0;
+            int i = 0;
+            int j = 0;
+            while (i < cells.length && j < place.cells.length) {
+                if (cells[i] < place.cells[j]) {
+                    i++;
+                } else if (cells[i] > place.cells[j]) {
+                    j++;
+                } else {
+                    common++;
+                    i++;
+                    j++;
+                }
+            }
+            int union = cells.length + place.cells.length - common;
+            return union == 0 ? 0 : (double) common / union;
+        }
+    }
+
+    public static class Match {
+        private final Place place;
+        private final double similarity;
+
+        private Match(Place place, double similarity) {
+            this.place = place;
+            this.similarity = similarity;
+        }
+
+        public Place getPlace() {
+            return place;
+        }
+
+        public double getSimilarity() {
+            return similarity;
+        }
+    }
+
+    private final List<Place> places = new ArrayList<Place>();
+    private final Map<Long, List<Place>> placesByCell = new HashMap<Long, List<Place>>();
+    private final Map<Long, List<Place>> placesByBand = new HashMap<Long, List<Place>>();
+
+    public int size() {
+        return places.size();
+    }
+
+    public Place getPlace(int id) {
+        return places.get(id);
+    }
+
+    /**
+     * Creates place of scans [fromScan, toScan) of the store, cells seen in no more than ignoreCells scans are left
+     * out. Place is not added to the index.
+     */
+    public Place createPlace(ScanStore store, int fromScan, int toScan, int ignoreCells) {
+        long[] keys = new long[store.getCellsEnd(toScan - 1) - store.getCellsStart(fromScan)];
+        int count = 0;
+        for (int cell = store.getCellsStart(fromScan); cell < store.getCellsEnd(toScan - 1); cell++) {
+            keys[count++] = key(store.getLac(cell), store.getCellId(cell));
+        }
+        Arrays.sort(keys);
+
+        // keep distinct keys seen often enough
+        int cellCount = 0;
+        int i = 0;
+        while (i < count) {
+            int j = i + 1;
+            while (j < count && keys[j] == keys[i]) {
+                j++;
+            }
+            if (j - i > ignoreCells) {
+                keys[cellCount++] = keys[i];
+            }
+            i = j;
+        }
+
+        return new Place(places.size(), store.getScanTime(fromScan), store.getScanTime(toScan - 1),
+            Arrays.copyOf(keys, cellCount));
+    }
+
+    public void add(Place place) {
+        if (place.id != places.size()) {
+            throw new IllegalArgumentException("Place is not created for this index or is already added.");
+        }
+        places.add(place);
+
+        for (long cell : place.cells) {
+            getList(placesByCell, cell).add(place);
+        }
+        if (place.cells.length > 0) {
+            for (int band = 0; band < BANDS; band++) {
+                getList(placesByBand, bandKey(place.signature, band)).add(place);
+            }
+        }
+    }
+
+    /**
+     * @return places where the cell was seen, in order of adding
+     */
+    public List<Place> getPlaces(int lac, int cellId) {
+        List<Place> result = placesByCell.get(key(lac, cellId));
+        return result == null ? Collections.<Place>emptyList() : Collections.unmodifiableList(result);
+    }
+
+    /**
+     * @return indexed places with similarity to given place at least minSimilarity, the most similar first
+     */
+    public List<Match> findSimilar(Place place, double minSimilarity) {
+        List<Match> result = new ArrayList<Match>();
+        if (place.cells.length == 0) {
+            return result;
+        }
+
+        BitSet compared = new BitSet(places.size());
+        for (int band = 0; band < BANDS; band++) {
+            List<Place> candidates = placesByBand.get(bandKey(place.signature, band));
+            if (candidates == null) {
+                continue;
+            }
+            for (Place candidate : candidates) {
+                if (candidate == place || compared.get(candidate.id)) {
+                    continue;
+                }
+                compared.set(candidate.id);
+
+                double similarity = place.getSimilarity(candidate);
+                if (similarity >= minSimilarity) {
+                    result.add(new Match(candidate, similarity));
+                }
+            }
+        }
+
+        Collections.sort(result, new Comparator<Match>() {
+            @Override
+            public int compare(Match first, Match second) {
+                return Double.compare(second.similarity, first.similarity);
+            }
+        });
+        return result;
+    }
+
+    private static long key(int lac, int cellId) {
+        return ((long) lac << 32) | (cellId & 0xffffffffL);
+    }
+
+    private static <T> List<T> getList(Map<Long, List<T>> map, long key) {
+        List<T> list = map.get(key);
+        if (list == null) {
+            list = new ArrayList<T>();
+            map.put(key, list);
+        }
+        return list;
+    }
+
+    /**
+     * @return minimums of cell keys under SIGNATURE_LENGTH different hash functions
+     */
+    private static long[] signature(long[] cells) {
+        long[] result = new long[SIGNATURE_LENGTH];
+        Arrays.fill(result, Long.MAX_VALUE);
+        for (long cell : cells) {
+            for (int i = 0; i < SIGNATURE_LENGTH; i++) {
+                result[i] = Math.min(result[i], mix(cell + (i + 1) * 0x9e3779b97f4a7c15L) >>> 1);
+            }
+        }
+        return result;
+    }
+
+    private static long bandKey(long[] signature, int band) {
+        long result = band;
+        for (int row = band * ROWS; row < (band + 1) * ROWS; row++) {
+            result = mix(result * 31 + signature[row]);
+        }
+        return result;
+    }
+
+    /**
+     * Finalizer of SplitMix64 generator, spreads bits of value over the whole result.
+     */
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return value ^ (value >>> 31);
+    }
+}
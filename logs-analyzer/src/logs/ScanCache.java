@@ -0,0 +1,98 @@
+package logs;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Binary cache of parsed scans. Scans of each log file are stored in '.scans' directory next to the file, together
+ * with size and modification time of the log file, so cache is used only while log file is not changed.
+ */
+public class ScanCache {
+    static final String DIRECTORY = ".scans";
+    private static final String EXTENSION = ".scans";
+    private static final int MAGIC = 0x5343414e;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 24;
+
+    /**
+     * @return cached scans of log file or null if there is no cache, cache is truncated or corrupt or log file is
+     *         changed since it was cached
+     */
+    public static ScanStore load(File file) throws IOException {
+        File cacheFile = getCacheFile(file);
+        if (!cacheFile.isFile()) {
+            return null;
+        }
+
+        RandomAccessFile input = new RandomAccessFile(cacheFile, "r");
+        try {
+            FileChannel channel = input.getChannel();
+            if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+                return null;
+            }
+
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION
+                || buffer.getLong() != file.length() || buffer.getLong() != file.lastModified()) {
+                return null;
+            }
+            return ScanStore.readFrom(buffer);
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Writes scans of log file to cache, cache file is replaced only when it is written completely.
+     */
+    public static void save(File file, ScanStore store) throws IOException {
+        long size = HEADER_SIZE + store.getByteSize();
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Scans of '" + file + "' are too large to be cached.");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putLong(file.length());
+        buffer.putLong(file.lastModified());
+        store.writeTo(buffer);
+        buffer.flip();
+        write(getCacheFile(file), buffer);
+    }
+
+    /**
+     * Writes remaining bytes of buffer to file through temporary file, so file is either old or completely written.
+     */
+    static void write(File file, ByteBuffer buffer) throws IOException {
+        File directory = file.getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Failed to create cache directory '" + directory + "'.");
+        }
+
+        File temporaryFile = new File(directory, file.getName() + ".tmp");
+        RandomAccessFile output = new RandomAccessFile(temporaryFile, "rw");
+        try {
+            FileChannel channel = output.getChannel();
+            channel.truncate(0);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } finally {
+            output.close();
+        }
+        Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static File getCacheFile(File file) {
+        return new File(new File(file.getAbsoluteFile().getParentFile(), DIRECTORY), file.getName() + EXTENSION);
+    }
+}
@@ -0,0 +1,355 @@
+package logs;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Sparse index of scan times of log files in a directory. Every {@link #BLOCK_SCANS}th scan start line is indexed by
+ * its offset in the file together with the lowest and the highest scan time of the block of scans it starts, so scans
+ * of a time interval are read by parsing only blocks overlapping the interval. Device clock may be adjusted, so times
+ * of blocks are not expected to be ordered.
+ *
+ * Index of all files of a directory is stored in '.scans/scans.index', entries of files changed since they were
+ * indexed are rebuilt on the next read. Compressed files cannot be read from offset, so their blocks are only used to
+ * skip files without scans of the interval.
+ */
+public class ScanIndex {
+    public static final int BLOCK_SCANS = 64;
+
+    private static final String FILE = "scans.index";
+    private static final int MAGIC = 0x53494458;
+    private static final int VERSION = 1;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Indexed blocks of one log file.
+     */
+    private static class Entry {
+        private final long length;
+        private final long lastModified;
+        private int blockCount;
+        private int[] offsets;
+        private long[] minTimes;
+        private long[] maxTimes;
+
+        private Entry(long length, long lastModified, int blockCount) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.blockCount = blockCount;
+            offsets = new int[Math.max(blockCount, 16)];
+            minTimes = new long[offsets.length];
+            maxTimes = new long[offsets.length];
+        }
+
+        private boolean isValid(File file) {
+            return file.length() == length && file.lastModified() == lastModified;
+        }
+
+        private boolean overlaps(int block, long from, long to) {
+            return maxTimes[block] >= from && minTimes[block] < to;
+        }
+
+        private boolean overlaps(long from, long to) {
+            for (int block = 0; block < blockCount; block++) {
+                if (overlaps(block, from, to)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void addBlock(int offset, long scanTime) {
+            if (blockCount == offsets.length) {
+                offsets = Arrays.copyOf(offsets, blockCount * 2);
+                minTimes = Arrays.copyOf(minTimes, blockCount * 2);
+                maxTimes = Arrays.copyOf(maxTimes, blockCount * 2);
+            }
+            offsets[blockCount] = offset;
+            minTimes[blockCount] = scanTime;
+            maxTimes[blockCount] = scanTime;
+            blockCount++;
+        }
+
+        private void addScan(long scanTime) {
+            minTimes[blockCount - 1] = Math.min(minTimes[blockCount - 1], scanTime);
+            maxTimes[blockCount - 1] = Math.max(maxTimes[blockCount - 1], scanTime);
+        }
+    }
+
+    /**
+     * Collects offsets and times of scan start lines into entry.
+     */
+    private static class EntryBuilder implements LogParser.ScanHandler {
+        private final Entry entry;
+        private final LogParser parser = new LogParser(this);
+        private int scanCount;
+
+        private EntryBuilder(Entry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public void scanStarted(long scanTime) {
+            if (scanCount % BLOCK_SCANS == 0) {
+                entry.addBlock(parser.getLineStart(), scanTime);
+            } else {
+                entry.addScan(scanTime);
+            }
+            scanCount++;
+        }
+
+        @Override
+        public void cellScanned(int cellId, int lac, int rssi) {
+            // only scan start lines are indexed
+        }
+    }
+
+    /**
+     * Passes to store only scans with time in interval.
+     */
+    private static class RangeFilter implements LogParser.ScanHandler {
+        private final ScanStore store;
+        private final long from;
+        private final long to;
+        private boolean inRange;
+
+        private RangeFilter(ScanStore store, long from, long to) {
+            this.store = store;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public void scanStarted(long scanTime) {
+            inRange = scanTime >= from && scanTime < to;
+            if (inRange) {
+                store.scanStarted(scanTime);
+            }
+        }
+
+        @Override
+        public void cellScanned(int cellId, int lac, int rssi) {
+            if (inRange) {
+                store.cellScanned(cellId, lac, rssi);
+            }
+        }
+    }
+
+    private final File directory;
+    private final Map<String, Entry> entries = new TreeMap<String, Entry>();
+    private boolean changed;
+
+    private ScanIndex(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @return time ordered scans of given log files with scan time in [from, to)
+     */
+    public static ScanStore read(List<File> files, long from, long to) throws IOException, ParseException {
+        Map<File, List<File>> directories = new LinkedHashMap<File, List<File>>();
+        for (File file : files) {
+            File directory = file.getAbsoluteFile().getParentFile();
+            List<File> directoryFiles = directories.get(directory);
+            if (directoryFiles == null) {
+                directoryFiles = new ArrayList<File>();
+                directories.put(directory, directoryFiles);
+            }
+            directoryFiles.add(file);
+        }
+
+        ScanStore result = new ScanStore();
+        for (Map.Entry<File, List<File>> directory : directories.entrySet()) {
+            ScanIndex index = load(directory.getKey());
+            for (File file : directory.getValue()) {
+                ScanStore scans = index.read(file, from, to);
+                if (result.size() == 0) {
+                    result = scans;
+                } else if (scans.size() > 0) {
+                    result = ScanStore.merge(result, scans);
+                }
+            }
+
+            if (index.changed) {
+                try {
+                    index.save();
+                } catch (IOException e) {
+                    System.err.println("Failed to save scan index of '" + directory.getKey() + "': " + e.getMessage());
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return index of directory, empty if there is no index or it cannot be read
+     */
+    static ScanIndex load(File directory) throws IOException {
+        ScanIndex index = new ScanIndex(directory);
+        File indexFile = index.getIndexFile();
+        if (!indexFile.isFile()) {
+            return index;
+        }
+
+        RandomAccessFile input = new RandomAccessFile(indexFile, "r");
+        try {
+            FileChannel channel = input.getChannel();
+            if (channel.size() > Integer.MAX_VALUE) {
+                return index;
+            }
+
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.remaining() < 12 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                return index;
+            }
+
+            int fileCount = buffer.getInt();
+            for (int i = 0; i < fileCount; i++) {
+                byte[] name = new byte[buffer.getInt()];
+                buffer.get(name);
+                Entry entry = new Entry(buffer.getLong(), buffer.getLong(), buffer.getInt());
+                buffer.asIntBuffer().get(entry.offsets, 0, entry.blockCount);
+                buffer.position(buffer.position() + entry.blockCount * 4);
+                buffer.asLongBuffer().get(entry.minTimes, 0, entry.blockCount);
+                buffer.position(buffer.position() + entry.blockCount * 8);
+                buffer.asLongBuffer().get(entry.maxTimes, 0, entry.blockCount);
+                buffer.position(buffer.position() + entry.blockCount * 8);
+                index.entries.put(new String(name, UTF_8), entry);
+            }
+        } catch (RuntimeException e) {
+            // corrupted index, it is rebuilt
+            index.entries.clear();
+        } finally {
+            input.close();
+        }
+        return index;
+    }
+
+    /**
+     * Writes index, entries of files which do not exist anymore are dropped.
+     */
+    void save() throws IOException {
+        List<byte[]> names = new ArrayList<byte[]>();
+        List<Entry> savedEntries = new ArrayList<Entry>();
+        long size = 12;
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            if (new File(directory, entry.getKey()).isFile()) {
+                byte[] name = entry.getKey().getBytes(UTF_8);
+                names.add(name);
+                savedEntries.add(entry.getValue());
+                size += 4 + name.length + 20 + entry.getValue().blockCount * 20L;
+            }
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Scan index of '" + directory + "' is too large.");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(names.size());
+        for (int i = 0; i < names.size(); i++) {
+            Entry entry = savedEntries.get(i);
+            buffer.putInt(names.get(i).length);
+            buffer.put(names.get(i));
+            buffer.putLong(entry.length);
+            buffer.putLong(entry.lastModified);
+            buffer.putInt(entry.blockCount);
+            buffer.asIntBuffer().put(entry.offsets, 0, entry.blockCount);
+            buffer.position(buffer.position() + entry.blockCount * 4);
+            buffer.asLongBuffer().put(entry.minTimes, 0, entry.blockCount);
+            buffer.position(buffer.position() + entry.blockCount * 8);
+            buffer.asLongBuffer().put(entry.maxTimes, 0, entry.blockCount);
+            buffer.position(buffer.position() + entry.blockCount * 8);
+        }
+        buffer.flip();
+        ScanCache.write(getIndexFile(), buffer);
+        changed = false;
+    }
+
+    /**
+     * Reads scans of log file from the directory with scan time in [from, to), file is indexed if needed.
+     *
+     * @return time ordered scans
+     */
+    ScanStore read(File file, long from, long to) throws IOException, ParseException {
+        ScanStore result = new ScanStore();
+        Entry entry = entries.get(file.getName());
+        if (entry != null && entry.isValid(file) && !entry.overlaps(from, to)) {
+            return result;
+        }
+
+        if (LogParser.isStream(file)) {
+            if (entry == null || !entry.isValid(file)) {
+                entry = new Entry(file.length(), file.lastModified(), 0);
+                LogParser.parse(file, new EntryBuilder(entry));
+                entries.put(file.getName(), entry);
+                changed = true;
+                if (!entry.overlaps(from, to)) {
+                    return result;
+                }
+            }
+
+            LogParser.parse(file, new RangeFilter(result, from, to));
+            return result.sortByTime();
+        }
+
+        RandomAccessFile input = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = input.getChannel();
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File '" + file + "' is too large to be mapped.");
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            if (entry == null || !entry.isValid(file)) {
+                entry = new Entry(size, file.lastModified(), 0);
+                EntryBuilder builder = new EntryBuilder(entry);
+                builder.parser.parse(buffer, 0, (int) size, true);
+                entries.put(file.getName(), entry);
+                changed = true;
+            }
+
+            // parse runs of overlapping blocks, each block ends where the next one starts
+            LogParser parser = new LogParser(new RangeFilter(result, from, to));
+            int block = 0;
+            while (block < entry.blockCount) {
+                if (!entry.overlaps(block, from, to)) {
+                    block++;
+                    continue;
+                }
+
+                int start = entry.offsets[block];
+                while (block < entry.blockCount && entry.overlaps(block, from, to)) {
+                    block++;
+                }
+                int end = block < entry.blockCount ? entry.offsets[block] : (int) size;
+                parser.parse(buffer, start, end, true);
+            }
+        } finally {
+            input.close();
+        }
+
+        // scans of one file are expected to be in time order, but device clock may be adjusted
+        return result.sortByTime();
+    }
+
+    private File getIndexFile() {
+        return new File(new File(directory, ScanCache.DIRECTORY), FILE);
+    }
+}
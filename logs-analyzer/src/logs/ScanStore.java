@@ -0,0 +1,334 @@
+package logs;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import my.activity.demo.location.ScanHistory;
+
+/**
+ * Column store of scans. Scan times, offsets of scan cells and cell id, LAC and RSSI of each cell are kept in
+ * separate primitive columns, split to fixed size chunks, so store grows without copying of already stored data.
+ * Cells of scan are stored continuously from {@link #getCellsStart(int)} to {@link #getCellsEnd(int)}.
+ */
+public class ScanStore implements LogParser.ScanHandler, ScanHistory {
+    private static final int CHUNK_BITS = 14;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    // scan columns
+    private long[][] scanTimes = new long[1][];
+    private int[][] cellOffsets = new int[1][];
+    private int scanCount;
+
+    // cell columns
+    private int[][] cellIds = new int[1][];
+    private int[][] lacs = new int[1][];
+    private int[][] rssis = new int[1][];
+    private int cellCount;
+
+    @Override
+    public int size() {
+        return scanCount;
+    }
+
+    public int getCellCount() {
+        return cellCount;
+    }
+
+    @Override
+    public long getScanTime(int scan) {
+        checkScan(scan);
+        return scanTimes[scan >>> CHUNK_BITS][scan & CHUNK_MASK];
+    }
+
+    @Override
+    public int getCellsStart(int scan) {
+        checkScan(scan);
+        return cellOffsets[scan >>> CHUNK_BITS][scan & CHUNK_MASK];
+    }
+
+    @Override
+    public int getCellsEnd(int scan) {
+        checkScan(scan);
+        return scan + 1 < scanCount ? cellOffsets[(scan + 1) >>> CHUNK_BITS][(scan + 1) & CHUNK_MASK] : cellCount;
+    }
+
+    @Override
+    public int getCellId(int cell) {
+        checkCell(cell);
+        return cellIds[cell >>> CHUNK_BITS][cell & CHUNK_MASK];
+    }
+
+    @Override
+    public int getLac(int cell) {
+        checkCell(cell);
+        return lacs[cell >>> CHUNK_BITS][cell & CHUNK_MASK];
+    }
+
+    @Override
+    public int getRssi(int cell) {
+        checkCell(cell);
+        return rssis[cell >>> CHUNK_BITS][cell & CHUNK_MASK];
+    }
+
+    @Override
+    public void scanStarted(long scanTime) {
+        int chunk = scanCount >>> CHUNK_BITS;
+        if (chunk == scanTimes.length) {
+            scanTimes = Arrays.copyOf(scanTimes, chunk * 2);
+            cellOffsets = Arrays.copyOf(cellOffsets, chunk * 2);
+        }
+        if (scanTimes[chunk] == null) {
+            scanTimes[chunk] = new long[CHUNK_SIZE];
+            cellOffsets[chunk] = new int[CHUNK_SIZE];
+        }
+
+        scanTimes[chunk][scanCount & CHUNK_MASK] = scanTime;
+        cellOffsets[chunk][scanCount & CHUNK_MASK] = cellCount;
+        scanCount++;
+    }
+
+    @Override
+    public void cellScanned(int cellId, int lac, int rssi) {
+        if (scanCount == 0) {
+            throw new IllegalStateException("Cell is scanned before scan is started.");
+        }
+
+        int chunk = cellCount >>> CHUNK_BITS;
+        if (chunk == cellIds.length) {
+            cellIds = Arrays.copyOf(cellIds, chunk * 2);
+            lacs = Arrays.copyOf(lacs, chunk * 2);
+            rssis = Arrays.copyOf(rssis, chunk * 2);
+        }
+        if (cellIds[chunk] == null) {
+            cellIds[chunk] = new int[CHUNK_SIZE];
+            lacs[chunk] = new int[CHUNK_SIZE];
+            rssis[chunk] = new int[CHUNK_SIZE];
+        }
+
+        cellIds[chunk][cellCount & CHUNK_MASK] = cellId;
+        lacs[chunk][cellCount & CHUNK_MASK] = lac;
+        rssis[chunk][cellCount & CHUNK_MASK] = rssi;
+        cellCount++;
+    }
+
+    /**
+     * Appends copy of scan from another store.
+     */
+    public void addScan(ScanStore source, int scan) {
+        scanStarted(source.getScanTime(scan));
+        for (int cell = source.getCellsStart(scan); cell < source.getCellsEnd(scan); cell++) {
+            cellScanned(source.getCellId(cell), source.getLac(cell), source.getRssi(cell));
+        }
+    }
+
+    public void addAll(ScanStore source) {
+        for (int scan = 0; scan < source.size(); scan++) {
+            addScan(source, scan);
+        }
+    }
+
+    /**
+     * Removes scans without cells. Cells are not moved, as removed scans do not have any.
+     */
+    public void removeEmptyScans() {
+        int count = 0;
+        for (int scan = 0; scan < scanCount; scan++) {
+            if (getCellsStart(scan) != getCellsEnd(scan)) {
+                scanTimes[count >>> CHUNK_BITS][count & CHUNK_MASK] = getScanTime(scan);
+                cellOffsets[count >>> CHUNK_BITS][count & CHUNK_MASK] = getCellsStart(scan);
+                count++;
+            }
+        }
+        scanCount = count;
+    }
+
+    public boolean isTimeOrdered() {
+        for (int scan = 1; scan < scanCount; scan++) {
+            if (getScanTime(scan) < getScanTime(scan - 1)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return index of the first scan with time not less than given one, scans are expected to be in time order
+     */
+    public int findScan(long time) {
+        int low = 0;
+        int high = scanCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (getScanTime(middle) < time) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return this store if scans are in time order, otherwise new store with scans stable sorted by time
+     */
+    public ScanStore sortByTime() {
+        if (isTimeOrdered()) {
+            return this;
+        }
+
+        Integer[] order = new Integer[scanCount];
+        for (int scan = 0; scan < scanCount; scan++) {
+            order[scan] = scan;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer first, Integer second) {
+                long firstTime = getScanTime(first);
+                long secondTime = getScanTime(second);
+                return firstTime < secondTime ? -1 : (firstTime == secondTime ? 0 : 1);
+            }
+        });
+
+        ScanStore result = new ScanStore();
+        for (Integer scan : order) {
+            result.addScan(this, scan);
+        }
+        return result;
+    }
+
+    /**
+     * Merges two time ordered stores, on equal times scans from the first store go first.
+     */
+    public static ScanStore merge(ScanStore first, ScanStore second) {
+        ScanStore result = new ScanStore();
+        int i = 0;
+        int j = 0;
+        while (i < first.size() && j < second.size()) {
+            if (second.getScanTime(j) < first.getScanTime(i)) {
+                result.addScan(second, j++);
+            } else {
+                result.addScan(first, i++);
+            }
+        }
+        while (i < first.size()) {
+            result.addScan(first, i++);
+        }
+        while (j < second.size()) {
+            result.addScan(second, j++);
+        }
+        return result;
+    }
+
+    /**
+     * @return count of bytes written by {@link #writeTo(ByteBuffer)}
+     */
+    public long getByteSize() {
+        return 8 + scanCount * 12L + cellCount * 12L;
+    }
+
+    /**
+     * Writes counts of scans and cells followed by each column.
+     */
+    public void writeTo(ByteBuffer buffer) {
+        buffer.putInt(scanCount);
+        buffer.putInt(cellCount);
+        putLongs(buffer, scanTimes, scanCount);
+        putInts(buffer, cellOffsets, scanCount);
+        putInts(buffer, cellIds, cellCount);
+        putInts(buffer, lacs, cellCount);
+        putInts(buffer, rssis, cellCount);
+    }
+
+    /**
+     * Reads store written by {@link #writeTo(ByteBuffer)}, remaining bytes of buffer must hold just the store.
+     *
+     * @return store or null if buffer is truncated or store is corrupt
+     */
+    public static ScanStore readFrom(ByteBuffer buffer) {
+        if (buffer.remaining() < 8) {
+            return null;
+        }
+        ScanStore result = new ScanStore();
+        result.scanCount = buffer.getInt();
+        result.cellCount = buffer.getInt();
+        if (result.scanCount < 0 || result.cellCount < 0
+            || buffer.remaining() != result.getByteSize() - 8) {
+            return null;
+        }
+
+        result.scanTimes = getLongs(buffer, result.scanCount);
+        result.cellOffsets = getInts(buffer, result.scanCount);
+        result.cellIds = getInts(buffer, result.cellCount);
+        result.lacs = getInts(buffer, result.cellCount);
+        result.rssis = getInts(buffer, result.cellCount);
+
+        // cells of each scan must follow cells of previous scan
+        int previous = 0;
+        for (int scan = 0; scan < result.scanCount; scan++) {
+            int offset = result.cellOffsets[scan >>> CHUNK_BITS][scan & CHUNK_MASK];
+            if (offset < previous || offset > result.cellCount) {
+                return null;
+            }
+            previous = offset;
+        }
+        return result;
+    }
+
+    private static void putLongs(ByteBuffer buffer, long[][] column, int count) {
+        LongBuffer view = buffer.asLongBuffer();
+        for (int chunk = 0; chunk * CHUNK_SIZE < count; chunk++) {
+            view.put(column[chunk], 0, Math.min(count - chunk * CHUNK_SIZE, CHUNK_SIZE));
+        }
+        buffer.position(buffer.position() + count * 8);
+    }
+
+    private static void putInts(ByteBuffer buffer, int[][] column, int count) {
+        IntBuffer view = buffer.asIntBuffer();
+        for (int chunk = 0; chunk * CHUNK_SIZE < count; chunk++) {
+            view.put(column[chunk], 0, Math.min(count - chunk * CHUNK_SIZE, CHUNK_SIZE));
+        }
+        buffer.position(buffer.position() + count * 4);
+    }
+
+    private static long[][] getLongs(ByteBuffer buffer, int count) {
+        long[][] column = new long[Math.max(chunks(count), 1)][];
+        LongBuffer view = buffer.asLongBuffer();
+        for (int chunk = 0; chunk * CHUNK_SIZE < count; chunk++) {
+            column[chunk] = new long[CHUNK_SIZE];
+            view.get(column[chunk], 0, Math.min(count - chunk * CHUNK_SIZE, CHUNK_SIZE));
+        }
+        buffer.position(buffer.position() + count * 8);
+        return column;
+    }
+
+    private static int[][] getInts(ByteBuffer buffer, int count) {
+        int[][] column = new int[Math.max(chunks(count), 1)][];
+        IntBuffer view = buffer.asIntBuffer();
+        for (int chunk = 0; chunk * CHUNK_SIZE < count; chunk++) {
+            column[chunk] = new int[CHUNK_SIZE];
+            view.get(column[chunk], 0, Math.min(count - chunk * CHUNK_SIZE, CHUNK_SIZE));
+        }
+        buffer.position(buffer.position() + count * 4);
+        return column;
+    }
+
+    private static int chunks(int count) {
+        return (count + CHUNK_SIZE - 1) >>> CHUNK_BITS;
+    }
+
+    private void checkScan(int scan) {
+        if (scan < 0 || scan >= scanCount) {
+            throw new IndexOutOfBoundsException("Scan " + scan + " is out of range, size " + scanCount + ".");
+        }
+    }
+
+    private void checkCell(int cell) {
+        if (cell < 0 || cell >= cellCount) {
+            throw new IndexOutOfBoundsException("Cell " + cell + " is out of range, count " + cellCount + ".");
+        }
+    }
+}